@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.gorva.cplsi.Cplsi;
+import ru.gorva.cplsi.DataReader;
+import ru.gorva.cplsi.KMeansParallelSeeding;
+import ru.gorva.cplsi.KMeansPlusPlusSeeding;
+import ru.gorva.cplsi.LabelMeanSeeding;
+import ru.gorva.cplsi.LabeledRowSeeding;
+import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the full {@link Cplsi#cluster(double)} run.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CplsiBenchmark {
+    static final double LAMBDA = 100;
+
+    @State(Scope.Benchmark)
+    public static class Bundled {
+        @Param({"glass", "iris", "wine"})
+        public String dataSet;
+
+        @Param({"0.1", "0.5"})
+        public double sideRatio;
+
+        Dataset dataset;
+        BaseType[] labels;
+        Set<BaseType> labelSet;
+
+        @Setup
+        public void setUp() throws IOException {
+            DataReader reader = DataSets.readBundled(dataSet);
+            Random random = new Random(DataSets.SEED);
+            dataset = reader.getDataset();
+            labelSet = reader.getDistinctLabels();
+            labels = reader.getRowLabels().clone();
+            for (int row = 0; row < labels.length; ++row)
+                if (random.nextDouble() >= sideRatio)
+                    labels[row] = null;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+        @Param({"10000", "100000"})
+        public int rows;
+
+        @Param({"4", "13"})
+        public int dimension;
+
+        @Param({"3", "10"})
+        public int k;
+
+        @Param({"0.1", "0.5"})
+        public double sideRatio;
+
+        @Param({"rows", "means", "kmeans++", "kmeans||"})
+        public String seeding;
+
+        @Param({"direct", "tree"})
+        public String assignment;
+
+        Dataset dataset;
+        BaseType[] labels;
+        Set<BaseType> labelSet;
+
+        @Setup
+        public void setUp() {
+            int[] classes = new int[rows];
+            dataset = DataSets.blobs(classes, dimension, k, DataSets.SEED);
+            labelSet = DataSets.labelSet(k);
+            labels = DataSets.sideInformation(classes, labelSet, sideRatio, DataSets.SEED);
+        }
+    }
+
+    @Benchmark
+    public int[] clusterBundled(Bundled state) {
+        Cplsi cplsi = new Cplsi(state.dataset, state.labels, state.labelSet, state.labelSet.size());
+        cplsi.cluster(LAMBDA);
+        return cplsi.getAssignments();
+    }
+
+    @Benchmark
+    public int[] clusterSynthetic(Synthetic state) {
+        Cplsi cplsi = new Cplsi(state.dataset, state.labels, state.labelSet, state.k);
+        cplsi.setSeed(DataSets.SEED);
+        cplsi.setSeeding("means".equals(state.seeding) ? new LabelMeanSeeding()
+                : "kmeans++".equals(state.seeding) ? new KMeansPlusPlusSeeding()
+                : "kmeans||".equals(state.seeding) ? new KMeansParallelSeeding() : new LabeledRowSeeding());
+        cplsi.setTreeFiltering("tree".equals(state.assignment));
+        cplsi.cluster(LAMBDA);
+        return cplsi.getAssignments();
+    }
+}
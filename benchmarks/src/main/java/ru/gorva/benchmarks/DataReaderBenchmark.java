@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.gorva.cplsi.DataReader;
+import ru.gorva.data.Dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link DataReader#parseDataset(int, int...)}.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataReaderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Bundled {
+        @Param({"glass", "iris", "wine"})
+        public String dataSet;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+        @Param({"10000", "100000"})
+        public int rows;
+
+        @Param({"4", "13", "200"})
+        public int dimension;
+
+        File file;
+
+        @Setup
+        public void setUp() throws IOException {
+            file = DataSets.blobsFile(rows, dimension, 10);
+        }
+
+        @TearDown
+        public void tearDown() {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public Dataset parseBundled(Bundled state) throws IOException {
+        return new DataReader(DataSets.bundledFile(state.dataSet))
+                .parseDataset(DataSets.bundledLabelIndex(state.dataSet), DataSets.bundledSkip(state.dataSet));
+    }
+
+    @Benchmark
+    public Dataset parseSynthetic(Synthetic state) throws IOException {
+        return new DataReader(state.file).parseDataset(state.dimension);
+    }
+}
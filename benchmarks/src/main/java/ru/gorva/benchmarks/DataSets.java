@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.benchmarks;
+
+import ru.gorva.cplsi.DataReader;
+import ru.gorva.data.ArrayDataset;
+import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.IntegerType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Inputs of the benchmarks: bundled data sets and synthetic ones.
+ * <p>
+ * Bundled data sets are looked up in the directory specified by the
+ * {@code cplsi.dataSets} system property, {@code data_sets} by default.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+final class DataSets {
+    static final long SEED = 20161125L;
+
+    private DataSets() {
+    }
+
+    /**
+     * Reader of the bundled data set.
+     *
+     * @param name One of 'glass', 'iris', 'wine'.
+     * @return Reader which already parsed the data set.
+     */
+    static DataReader readBundled(String name) throws IOException {
+        DataReader reader = new DataReader(bundledFile(name));
+        reader.parseDataset(bundledLabelIndex(name), bundledSkip(name));
+        return reader;
+    }
+
+    static File bundledFile(String name) {
+        return new File(System.getProperty("cplsi.dataSets", "data_sets"), name + "/" + name + ".data");
+    }
+
+    static int bundledLabelIndex(String name) {
+        switch (name) {
+            case "glass":
+                return 10;
+            case "iris":
+                return 4;
+            case "wine":
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unknown data set '" + name + "'!");
+        }
+    }
+
+    static int[] bundledSkip(String name) {
+        return name.equals("glass") ? new int[]{0} : new int[0];
+    }
+
+    /**
+     * @return Labels of the {@code k} clusters.
+     */
+    static Set<BaseType> labelSet(int k) {
+        Set<BaseType> result = new LinkedHashSet<>();
+        for (int i = 0; i < k; ++i)
+            result.add(new IntegerType(i));
+        return result;
+    }
+
+    /**
+     * Generates {@code k} gaussian blobs.
+     *
+     * @param labels Recipient of the true cluster index of each row.
+     * @return Data set of {@code labels.length} rows.
+     */
+    static Dataset blobs(int[] labels, int dimension, int k, long seed) {
+        Random random = new Random(seed);
+        double[][] centers = new double[k][dimension];
+        for (double[] center : centers)
+            for (int i = 0; i < dimension; ++i)
+                center[i] = random.nextDouble() * 10 * k;
+        Dataset dataset = new ArrayDataset(labels.length, dimension);
+        for (int row = 0; row < labels.length; ++row) {
+            labels[row] = random.nextInt(k);
+            for (int i = 0; i < dimension; ++i)
+                dataset.set(row, i, centers[labels[row]][i] + random.nextGaussian() * 3);
+        }
+        return dataset;
+    }
+
+    /**
+     * @return Side information for the {@code ratio} of the rows, {@code null}
+     * for the other ones.
+     */
+    static BaseType[] sideInformation(int[] labels, Set<BaseType> labelSet, double ratio, long seed) {
+        Random random = new Random(seed);
+        BaseType[] values = labelSet.toArray(new BaseType[0]);
+        BaseType[] result = new BaseType[labels.length];
+        for (int row = 0; row < labels.length; ++row)
+            if (random.nextDouble() < ratio)
+                result[row] = values[labels[row]];
+        return result;
+    }
+
+    /**
+     * Writes gaussian blobs into a temporary CSV file, label is the last column.
+     */
+    static File blobsFile(int rows, int dimension, int k) throws IOException {
+        int[] labels = new int[rows];
+        Dataset dataset = blobs(labels, dimension, k, SEED);
+        File file = File.createTempFile("cplsi-blobs", ".data");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            StringBuilder sb = new StringBuilder();
+            for (int row = 0; row < rows; ++row) {
+                sb.setLength(0);
+                for (int i = 0; i < dimension; ++i)
+                    sb.append(dataset.get(row, i)).append(',');
+                sb.append("class-").append(labels[row]);
+                writer.println(sb);
+            }
+        }
+        return file;
+    }
+}
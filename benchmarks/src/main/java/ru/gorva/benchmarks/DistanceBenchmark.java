@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.gorva.cplsi.BlockedSquaredEuclideanDistance;
+import ru.gorva.cplsi.DistanceMeasure;
+import ru.gorva.cplsi.SquaredEuclideanDistance;
+import ru.gorva.cplsi.VectorizedSquaredEuclideanDistance;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.DistanceKernels;
+import ru.gorva.data.FloatDataset;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the {@link SquaredEuclideanDistance}, the
+ * {@link VectorizedSquaredEuclideanDistance} with the scalar and the default
+ * kernels and the {@link BlockedSquaredEuclideanDistance}. Each invocation
+ * calculates distances from {@link #ROWS} rows to all the centroids one by
+ * one or in a single batch, over the double or the single precision rows.
+ * The default kernel is vectorized only if the forks resolve the
+ * {@code jdk.incubator.vector} module, i.e. on JDK 17 or newer with
+ * {@code -jvmArgsAppend "--add-modules jdk.incubator.vector"}.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceBenchmark {
+    static final int ROWS = 1024;
+
+    @Param({"4", "13", "200"})
+    public int dimension;
+
+    @Param({"3", "20"})
+    public int k;
+
+    @Param({"0.1", "0.5"})
+    public double sideRatio;
+
+    @Param({"plain", "scalar", "default", "blocked"})
+    public String kernel;
+
+    @Param({"double", "float"})
+    public String precision;
+
+    private DistanceMeasure measure;
+    private Dataset dataset;
+    private int[] labels;
+    private double[][] centroids;
+    private double[] centroidNorms;
+    private double[] sideNorms;
+    private double[] result;
+
+    @Setup
+    public void setUp() {
+        measure = "plain".equals(kernel) ? new SquaredEuclideanDistance()
+                : "blocked".equals(kernel) ? new BlockedSquaredEuclideanDistance()
+                : new VectorizedSquaredEuclideanDistance("scalar".equals(kernel)
+                ? DistanceKernels.scalar() : DistanceKernels.getDefault());
+        Random random = new Random(DataSets.SEED);
+        int[] classes = new int[ROWS];
+        dataset = DataSets.blobs(classes, dimension, k, DataSets.SEED);
+        if ("float".equals(precision))
+            dataset = FloatDataset.copyOf(dataset);
+        labels = new int[ROWS];
+        for (int row = 0; row < ROWS; ++row)
+            labels[row] = random.nextDouble() < sideRatio ? classes[row] : -1;
+        centroids = new double[k][dimension + k];
+        centroidNorms = new double[k];
+        sideNorms = new double[k];
+        result = new double[ROWS * k];
+        for (int i = 0; i < k; ++i) {
+            dataset.copyRow(i, centroids[i], 0);
+            for (int j = dimension; j < dimension + k; ++j) {
+                centroids[i][j] = random.nextDouble();
+                sideNorms[i] += centroids[i][j] * centroids[i][j];
+            }
+            for (int j = 0; j < dimension; ++j)
+                centroidNorms[i] += centroids[i][j] * centroids[i][j];
+        }
+    }
+
+    @Benchmark
+    public double distance() {
+        double result = 0;
+        for (int row = 0; row < ROWS; ++row)
+            for (int i = 0; i < k; ++i)
+                result += measure.distance(dataset, row, labels[row], centroids[i], sideNorms[i], k, 100);
+        return result;
+    }
+
+    @Benchmark
+    public double[] distances() {
+        measure.distances(dataset, 0, ROWS, labels, centroids, centroidNorms, sideNorms, k, 100, result);
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.gorva.cplsi.ContingencyTable;
+import ru.gorva.cplsi.Nmi;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the {@link Nmi#calculateNmi()} and the {@link ContingencyTable}
+ * measures over the cluster indices.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NmiBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"3", "10", "100"})
+    public int k;
+
+    private int[] original;
+    private int[] clustered;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(DataSets.SEED);
+        original = new int[rows];
+        clustered = new int[rows];
+        for (int row = 0; row < rows; ++row) {
+            original[row] = random.nextInt(k);
+            // Agree with the original clustering in most of the cases.
+            clustered[row] = random.nextDouble() < 0.8 ? original[row] : random.nextInt(k);
+        }
+    }
+
+    @Benchmark
+    public double calculateNmi() {
+        return new Nmi(original, clustered, k).calculateNmi();
+    }
+
+    @Benchmark
+    public double contingencyMeasures() {
+        ContingencyTable table = new ContingencyTable(original, clustered, k);
+        return table.nmi() + table.adjustedRandIndex() + table.purity() + table.fMeasure();
+    }
+}
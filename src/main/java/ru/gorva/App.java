@@ -22,9 +22,11 @@ package ru.gorva;
 
 import ru.gorva.cplsi.*;
 import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.LabelDictionary;
+import ru.gorva.data.LabelVector;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
@@ -34,85 +36,91 @@ import java.util.*;
  *         Created on 20.11.16.
  */
 public class App {
+    /**
+     * Parsed data sets shared by the experiments. Budget in bytes and
+     * directory of the binary snapshots are taken from the
+     * {@code cplsi.cacheBudget} and {@code cplsi.snapshots} system properties.
+     */
+    static final DatasetCache CACHE = new DatasetCache(
+            Long.getLong("cplsi.cacheBudget", DatasetCache.DEFAULT_BUDGET),
+            System.getProperty("cplsi.snapshots") == null ? null : new File(System.getProperty("cplsi.snapshots")));
+
+    /**
+     * @return {@code quantum} of the {@code labels} labels,
+     * {@link LabelVector#NONE} for the rows without side information.
+     */
+    static LabelVector getSubsetOfLabels(LabelVector labels, int k,
+                                         double quantum, double errorQuantum) {
+        return getSubsetOfLabels(labels, k, quantum, errorQuantum, new Random());
+    }
 
     /**
-     * @return {@code quantum} of the {@code labels} labels.
+     * Erroneous labels are replaced with the first other label index.
+     *
+     * @param k    Amount of the distinct labels.
+     * @param rand Source of the randomness of the subset.
+     * @return {@code quantum} of the {@code labels} labels,
+     * {@link LabelVector#NONE} for the rows without side information.
      */
-    static Map<BaseType[], BaseType> getSubsetOfLabels(Map<BaseType[], BaseType> labels,
-                                                       Set<BaseType> distinctLabels,
-                                                       double quantum, double errorQuantum) {
-        Map<BaseType[], BaseType> subset = new HashMap<>();
-        Object[] keys = labels.keySet().toArray();
-        BaseType[] key;
-        Random rand = new Random();
+    static LabelVector getSubsetOfLabels(LabelVector labels, int k,
+                                         double quantum, double errorQuantum,
+                                         Random rand) {
+        LabelVector subset = LabelVector.create(labels.size(), k);
         for (int i = 0; i < labels.size(); ++i)
-            if (rand.nextDouble() <= quantum) {
-                key = (BaseType[]) keys[i];
-                subset.put(key, labels.get(key));
-            }
-        BaseType value;
-        Iterator<BaseType> iterator;
-        for (Map.Entry<BaseType[], BaseType> entry : subset.entrySet()) {
-            if (rand.nextDouble() <= errorQuantum) {
-                iterator = distinctLabels.iterator();
-                while ((value = iterator.next()).equals(entry.getValue())) ;
-                entry.setValue(value);
-            }
+            if (rand.nextDouble() <= quantum)
+                subset.set(i, labels.get(i));
+        int label;
+        for (int i = 0; i < subset.size(); ++i) {
+            if ((label = subset.get(i)) != LabelVector.NONE && rand.nextDouble() <= errorQuantum)
+                subset.set(i, label == 0 ? 1 : 0);
         }
         return subset;
     }
 
     /**
-     * Generate clusters based on the comprehensive label data.
+     * @return Amount of rows in each of the {@code k} clusters.
      */
-    static Cluster[] createOriginalCluster(List<BaseType[]> values,
-                                           Map<BaseType[], BaseType> labels,
-                                           Set<BaseType> distinctLabels,
-                                           int k) {
-        Cluster[] clusters = new Cluster[k];
-        List<BaseType> lbls = new ArrayList<>(distinctLabels);
-
-        for (int i = 0; i < k; ++i)
-            clusters[i] = new Cluster(lbls.get(i));
-
-        BaseType label;
-        for (BaseType[] row : values) {
-            label = labels.get(row);
-            clusters[lbls.indexOf(label)].add(new DataItem(row, true, label));
-        }
-        return clusters;
+    static int[] countInstances(int[] assignments, int k) {
+        int[] counts = new int[k];
+        for (int cluster : assignments)
+            ++counts[cluster];
+        return counts;
     }
 
     /**
      * Prints to console results of the clustering.
      *
-     * @param values   Initial values of the data set.
+     * @param size     Amount of rows in the data set.
+     * @param labels   Labels of the clusters.
      * @param original Original separation on the clusters.
      * @param clusters Clustered values.
+     * @param table    Contingency table of the original and clustered values.
      * @param nmi      Normalized Mutual Information.
      */
-    static void printClusterInfo(PrintStream stream, List<BaseType[]> values,
-                                 Cluster[] original, Cluster[] clusters, double nmi) {
+    static void printClusterInfo(PrintStream stream, int size, List<BaseType> labels,
+                                 int[] original, int[] clusters, ContingencyTable table, double nmi) {
+        int[] originalCounts = countInstances(original, labels.size());
+        int[] clusterCounts = countInstances(clusters, labels.size());
         stream.println("----------------------------------------------------");
         stream.println("| Data set  | Cluster label            | Instances |");
         stream.println("----------------------------------------------------");
-        for (int i = 0; i < original.length; ++i) {
+        for (int i = 0; i < labels.size(); ++i) {
             stream.println(String.format("| original  | %24s | %9d |",
-                    original[i].get(0).getLabel(), original[i].size()));
+                    labels.get(i), originalCounts[i]));
         }
         stream.println("----------------------------------------------------");
-        for (int i = 0; i < original.length; ++i) {
+        for (int i = 0; i < labels.size(); ++i) {
             stream.println(String.format("| clustered | %24s | %9d |",
-                    clusters[i].getLabel(), clusters[i].size()));
+                    labels.get(i), clusterCounts[i]));
         }
         stream.println("----------------------------------------------------");
         stream.println();
-        stream.println("-------------------------------------");
-        stream.println("| Instances | Clusters  | NMI       |");
-        stream.println("-------------------------------------");
-        stream.println(String.format("| %9d | %9d | %9.7f |", values.size(),
-                clusters.length, nmi));
-        stream.println("-------------------------------------");
+        stream.println("-------------------------------------------------------------------------");
+        stream.println("| Instances | Clusters  | NMI       | ARI       | Purity    | F-measure |");
+        stream.println("-------------------------------------------------------------------------");
+        stream.println(String.format("| %9d | %9d | %9.7f | %9.7f | %9.7f | %9.7f |", size,
+                labels.size(), nmi, table.adjustedRandIndex(), table.purity(), table.fMeasure()));
+        stream.println("-------------------------------------------------------------------------");
         stream.println();
         stream.println();
     }
@@ -125,34 +133,51 @@ public class App {
      */
     static double processFile(File file, boolean printInfo, double sideQuantum,
                               int labelIndex, int... skip) {
-        List<BaseType[]> values;
-        Map<BaseType[], BaseType> labels;
-        Set<BaseType> distinctLabels;
-        DataReader reader;
+        return processFile(file, printInfo, sideQuantum, new Random(),
+                Runtime.getRuntime().availableProcessors(), labelIndex, skip);
+    }
+
+    /**
+     * Perform CPLSI clustering and NMI measure for the specified data set.
+     *
+     * @param file        File with data set.
+     * @param random      Source of the randomness of the experiment.
+     * @param parallelism Amount of the threads used by the clustering.
+     * @return Normalized Mutual Information.
+     */
+    static double processFile(File file, boolean printInfo, double sideQuantum,
+                              Random random, int parallelism, int labelIndex, int... skip) {
+        Dataset dataset;
+        LabelVector labels;
+        LabelDictionary dictionary;
+        DatasetCache.Entry entry;
         try {
-            // Read file.
-            reader = new DataReader(file);
-            values = reader.parse(labelIndex, skip);
-            labels = reader.getLabels();
-            distinctLabels = reader.getDistinctLabels();
+            // Read file or take it from the cache.
+            entry = CACHE.get(file, labelIndex, skip);
+            dataset = entry.getDataset();
+            labels = entry.getLabels();
+            dictionary = entry.getLabelDictionary();
+            int k = dictionary.size();
             // Split values into clusters according to the provided labels.
-            Cluster[] original = createOriginalCluster(values,
-                    labels, distinctLabels, distinctLabels.size());
+            int[] original = labels.toArray();
 
             // Cluster provided data.
-            Cplsi cplsi = new Cplsi(values,
-                    getSubsetOfLabels(labels, distinctLabels, sideQuantum, 0),
-                    distinctLabels,
-                    distinctLabels.size());
+            Cplsi cplsi = new Cplsi(dataset,
+                    getSubsetOfLabels(labels, k, sideQuantum, 0, random),
+                    dictionary, k);
+            cplsi.setParallelism(parallelism);
+            cplsi.setSeed(random.nextLong());
             cplsi.cluster(100);
 
-            Cluster[] clusters = cplsi.getClusters();
+            int[] clusters = cplsi.getAssignments();
             // Calculate NMI measure.
-            Nmi nmi = new Nmi(original, clusters, distinctLabels, values.size());
+            ContingencyTable table = new ContingencyTable(original, clusters, k);
+            Nmi nmi = new Nmi(table);
             double nmiValue = nmi.calculateNmi();
             // Output obtained results.
             if (printInfo)
-                printClusterInfo(System.out, values, original, clusters, nmiValue);
+                printClusterInfo(System.out, dataset.size(), dictionary.getLabels(),
+                        original, clusters, table, nmiValue);
             return nmiValue;
         } catch (IOException e) {
             e.printStackTrace();
@@ -160,35 +185,47 @@ public class App {
         return -1;
     }
   
-    static void statistic(PrintStream stream, File file, int index, int... skip) {
+    /**
+     * Prints mean and standard deviation of the NMI measure for the side
+     * information quantum from 0.1 to 0.5.
+     */
+    static void statistic(PrintStream stream, ExperimentRunner runner, DatasetCatalog.Descriptor descriptor) {
+        File file = descriptor.getFile();
         final int n = 50;
-        double nmi;
+        ExperimentRunner.Statistics statistics;
         double quantum;
         quantum = 0.1;
         stream.println(file.getName());
-        stream.println("--------------------");
-        stream.println("|  %   |    NMI    |");
-        stream.println("--------------------");
+        stream.println("--------------------------------");
+        stream.println("|  %   |    NMI    |  Std dev  |");
+        stream.println("--------------------------------");
         while (quantum < 0.51) {
-            nmi = 0;
-            for (int i = 0; i < n; ++i)
-                nmi += processFile(file, false, quantum, index, skip);
-            nmi /= n;
-            stream.println(String.format("| %4.2f | %9.7f |", quantum, nmi));
+            statistics = runner.run(file, quantum, n, descriptor.getLabelIndex(), descriptor.getSkip());
+            stream.println(String.format("| %4.2f | %9.7f | %9.7f |", quantum,
+                    statistics.getMean(), statistics.getStandardDeviation()));
             quantum += 0.1;
         }
-        stream.println("--------------------");
+        stream.println("--------------------------------");
         stream.println();
 
     }
 
+    /**
+     * @param args Optional amount of the threads and master seed of the
+     *             experiments.
+     */
     public static void main(String[] args) {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        ExperimentRunner runner = new ExperimentRunner(parallelism, seed);
+        DatasetCatalog catalog = new DatasetCatalog(new File("data_sets"));
         try {
             PrintStream stream = new PrintStream(new File("results.txt"));
-            statistic(stream, new File("data_sets/glass/glass.data"), 10, 0);
-            statistic(stream, new File("data_sets/iris/iris.data"), 4);
-            statistic(stream, new File("data_sets/wine/wine.data"), 0);
-        } catch (FileNotFoundException e) {
+            statistic(stream, runner, catalog.describe(new File("data_sets/glass/glass.data")));
+            statistic(stream, runner, catalog.describe(new File("data_sets/iris/iris.data")));
+            statistic(stream, runner, catalog.describe(new File("data_sets/wine/wine.data")));
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs repetitions of the clustering experiment concurrently on a bounded
+ * pool. Each repetition gets its own seed derived from the master seed, the
+ * file, the side information quantum and the index of the repetition, and the
+ * results are aggregated in the order of the repetitions, so the statistics
+ * do not depend on the amount of threads.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class ExperimentRunner {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final int parallelism;
+    private final long seed;
+
+    /**
+     * @param parallelism Maximal amount of the concurrent repetitions.
+     * @param seed        Master seed of the experiments.
+     */
+    public ExperimentRunner(int parallelism, long seed) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism should be positive!");
+        this.parallelism = parallelism;
+        this.seed = seed;
+    }
+
+    /**
+     * Clusters the data set {@code repetitions} times with the random subset
+     * of labels as side information.
+     *
+     * @param file        File with data set.
+     * @param quantum     Share of the rows with side information.
+     * @param repetitions Amount of the repetitions.
+     * @param labelIndex  Index of the label column.
+     * @param skip        Indices of the columns to be skipped.
+     * @return Statistics of the NMI measure over the repetitions.
+     */
+    public Statistics run(File file, double quantum, int repetitions, int labelIndex, int... skip) {
+        // Quantum is keyed by its percentage, so 0.1 + 0.2 and 0.3 match.
+        long key = deriveSeed(seed, file.getName().hashCode(), Math.round(quantum * 100));
+        List<Callable<Double>> tasks = new ArrayList<>(repetitions);
+        for (int i = 0; i < repetitions; ++i) {
+            final long repetitionSeed = deriveSeed(key, i);
+            tasks.add(() -> App.processFile(file, false, quantum, new Random(repetitionSeed), 1,
+                    labelIndex, skip));
+        }
+        double[] values = new double[repetitions];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<Double>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < repetitions; ++i)
+                values[i] = futures.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Experiment is interrupted!", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new Statistics(values);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Mixes the keys into the seed with the SplitMix64 finalizer, so close
+     * keys give unrelated seeds.
+     */
+    static long deriveSeed(long seed, long... keys) {
+        long result = mix(seed);
+        for (long key : keys)
+            result = mix(result ^ mix(key + GOLDEN_GAMMA));
+        return result;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Mean and sample standard deviation of the values.
+     */
+    public static class Statistics {
+        private final int count;
+        private final double mean;
+        private final double standardDeviation;
+
+        Statistics(double[] values) {
+            double sum = 0;
+            for (double value : values)
+                sum += value;
+            count = values.length;
+            mean = count == 0 ? 0 : sum / count;
+            double squares = 0;
+            for (double value : values)
+                squares += (value - mean) * (value - mean);
+            standardDeviation = count < 2 ? 0 : Math.sqrt(squares / (count - 1));
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+    }
+}
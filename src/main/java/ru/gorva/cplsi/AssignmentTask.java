@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.ArrayKernels;
+import ru.gorva.data.Dataset;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fused assignment step of the CPLSI algorithm. Each row of the range is
+ * assigned to the nearest centroid and added to the partial sums of that
+ * centroid in the same pass.
+ * <p>
+ * The range is split in halves until it is not greater than
+ * {@link #BLOCK_SIZE}, so the shape of the task tree and therefore the order
+ * of the floating-point additions depend only on the amount of rows. Result
+ * is the same for any parallelism including sequential execution.
+ * <p>
+ * In the incremental mode only the rows which changed their cluster are
+ * accumulated: they are subtracted from the sums of the previous cluster and
+ * added to the sums of the new one, so the result is a difference to be
+ * merged into the sums of the previous step.
+ * <p>
+ * If {@link HamerlyBounds} are provided, the distances are calculated only
+ * for the rows which bounds do not prove that their cluster is unchanged.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+class AssignmentTask extends RecursiveTask<AssignmentTask.PartialSums> {
+    static final int BLOCK_SIZE = 1024;
+    /**
+     * Amount of rows which distances are calculated by a single call of
+     * {@link DistanceMeasure#distances}.
+     */
+    static final int TILE_SIZE = 256;
+
+    /**
+     * Per-cluster sums of the assigned rows and their amounts.
+     */
+    static class PartialSums {
+        final double[][] sums;
+        final int[] counts;
+        long distanceCalls;             // Amount of calculated distances.
+        long avoidedDistanceCalls;      // Amount of distances skipped due to the bounds.
+        int reassigned;                 // Amount of rows which changed their cluster.
+
+        PartialSums(int k, int dimension) {
+            this.sums = new double[k][dimension];
+            this.counts = new int[k];
+        }
+
+        /**
+         * Adds sums of the {@code other} to the current ones.
+         *
+         * @return {@code this}.
+         */
+        PartialSums merge(PartialSums other) {
+            distanceCalls += other.distanceCalls;
+            avoidedDistanceCalls += other.avoidedDistanceCalls;
+            reassigned += other.reassigned;
+            for (int i = 0; i < sums.length; ++i) {
+                counts[i] += other.counts[i];
+                ArrayKernels.add(sums[i], 0, other.sums[i], 0, sums[i].length);
+            }
+            return this;
+        }
+    }
+
+    private final Dataset data;
+    private final int[] labels;
+    private final double[][] centroids;
+    private final double[] centroidNorms;
+    private final double[] sideNorms;
+    private final int[] assignments;
+    private final DistanceMeasure measure;
+    private final HamerlyBounds bounds;
+    private final boolean incremental;
+    private final double lambda;
+    private final int from;
+    private final int to;
+
+    /**
+     * @param data          Initial values.
+     * @param labels        Label index for each row, -1 if there is no side
+     *                      information.
+     * @param centroids     Centroids of the clusters, side information part
+     *                      follows the features.
+     * @param centroidNorms Squared norms of the feature parts of the centroids.
+     * @param sideNorms     Squared norms of the side information parts of the
+     *                      centroids.
+     * @param assignments   Recipient of the cluster indices.
+     * @param measure       Distance measure.
+     * @param bounds        Distance bounds, {@code null} if all distances
+     *                      should be calculated.
+     * @param incremental   Whether only the differences caused by the rows
+     *                      which changed their cluster should be accumulated.
+     * @param lambda        Trade-off parameter.
+     * @param from          First row of the range, inclusive.
+     * @param to            Last row of the range, exclusive.
+     */
+    AssignmentTask(Dataset data, int[] labels, double[][] centroids, double[] centroidNorms, double[] sideNorms,
+                   int[] assignments, DistanceMeasure measure, HamerlyBounds bounds, boolean incremental,
+                   double lambda, int from, int to) {
+        this.data = data;
+        this.labels = labels;
+        this.centroids = centroids;
+        this.centroidNorms = centroidNorms;
+        this.sideNorms = sideNorms;
+        this.assignments = assignments;
+        this.measure = measure;
+        this.bounds = bounds;
+        this.incremental = incremental;
+        this.lambda = lambda;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected PartialSums compute() {
+        if (to - from <= BLOCK_SIZE)
+            return computeDirectly();
+        int middle = (from + to) >>> 1;
+        AssignmentTask left = new AssignmentTask(data, labels, centroids, centroidNorms, sideNorms,
+                assignments, measure, bounds, incremental, lambda, from, middle);
+        AssignmentTask right = new AssignmentTask(data, labels, centroids, centroidNorms, sideNorms,
+                assignments, measure, bounds, incremental, lambda, middle, to);
+        left.fork();
+        PartialSums rightSums = right.compute();
+        return left.join().merge(rightSums);
+    }
+
+    private PartialSums computeDirectly() {
+        int k = centroids.length;
+        PartialSums result = new PartialSums(k, data.getDimension() + k);
+
+        int minIndex, prevIndex, tileStart = from, tileEnd = from;
+        boolean useBounds = bounds != null && bounds.isInitialized();
+        // Without bounds the distances are calculated for a tile of rows at once.
+        double[] distances = new double[(useBounds ? 1 : TILE_SIZE) * k];
+        for (int row = from; row < to; ++row) {
+            prevIndex = assignments[row];
+            if (useBounds)
+                minIndex = assignWithBounds(row, distances, result);
+            else {
+                if (row == tileEnd) {
+                    tileStart = row;
+                    tileEnd = Math.min(row + TILE_SIZE, to);
+                    measure.distances(data, tileStart, tileEnd, labels, centroids, centroidNorms, sideNorms,
+                            k, lambda, distances);
+                    result.distanceCalls += (long) (tileEnd - tileStart) * k;
+                }
+                minIndex = selectNearest(row, distances, (row - tileStart) * k);
+            }
+            // Assign item to the closest centroid and accumulate it.
+            assignments[row] = minIndex;
+            if (prevIndex != minIndex)
+                ++result.reassigned;
+            if (incremental) {
+                if (prevIndex == minIndex)
+                    continue;
+                --result.counts[prevIndex];
+                accumulate(result.sums[prevIndex], row, -1);
+            }
+            ++result.counts[minIndex];
+            accumulate(result.sums[minIndex], row, 1);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the {@code row} multiplied by {@code sign} to the {@code sum}.
+     * Side information of the row is a single one at the position of its
+     * label in the side information part.
+     */
+    private void accumulate(double[] sum, int row, int sign) {
+        int dimension = data.getDimension();
+        data.accumulate(row, sum, sign);
+        if (labels[row] >= 0)
+            sum[dimension + labels[row]] += sign;
+    }
+
+    /**
+     * Finds closest centroid calculating distances to all the centroids.
+     * Initializes the bounds of the row if any.
+     *
+     * @param distances Buffer of at least {@code k} distances.
+     * @return Index of the closest centroid.
+     */
+    private int assignDirectly(int row, double[] distances, PartialSums result) {
+        int k = centroids.length;
+        measure.distances(data, row, row + 1, labels, centroids, centroidNorms, sideNorms, k, lambda, distances);
+        result.distanceCalls += k;
+        return selectNearest(row, distances, 0);
+    }
+
+    /**
+     * Finds closest centroid among the calculated distances. Initializes the
+     * bounds of the row if any.
+     *
+     * @param distances Distances of the row to the centroids.
+     * @param offset    Position of the distance to the first centroid.
+     * @return Index of the closest centroid.
+     */
+    private int selectNearest(int row, double[] distances, int offset) {
+        int k = centroids.length;
+        int minIndex = -1;
+        double distance;
+        double minDistance = Double.MAX_VALUE;
+        double secondMinDistance = Double.MAX_VALUE;
+        for (int i = 0; i < k; ++i) {
+            distance = distances[offset + i];
+            if (distance < minDistance) {
+                secondMinDistance = minDistance;
+                minDistance = distance;
+                minIndex = i;
+            } else if (distance < secondMinDistance)
+                secondMinDistance = distance;
+        }
+        if (bounds != null) {
+            bounds.upper[row] = Math.sqrt(minDistance);
+            bounds.lower[row] = k > 1 ? Math.sqrt(secondMinDistance) : Double.POSITIVE_INFINITY;
+        }
+        return minIndex;
+    }
+
+    /**
+     * Finds closest centroid calculating distances only if the bounds of the
+     * row do not prove that its cluster is unchanged.
+     *
+     * @return Index of the closest centroid.
+     */
+    private int assignWithBounds(int row, double[] distances, PartialSums result) {
+        int k = centroids.length;
+        int space = labels[row] >= 0 ? HamerlyBounds.WEIGHTED : HamerlyBounds.FEATURES;
+        int cluster = assignments[row];
+        // Shift the bounds by the movements of the centroids on the last step.
+        double upper = bounds.upper[row] + bounds.movements[space][cluster];
+        double lower = bounds.lower[row] - (cluster == bounds.maxMovementIndex[space]
+                ? bounds.secondMaxMovement[space] : bounds.maxMovement[space]);
+        double threshold = Math.max(bounds.halfSeparations[space][cluster], lower);
+        bounds.lower[row] = lower;
+        int calculated = 0;
+        if (upper >= threshold) {
+            // Tighten the upper bound and verify again.
+            upper = Math.sqrt(measure.distance(data, row, labels[row], centroids[cluster],
+                    sideNorms[cluster], k, lambda));
+            calculated = 1;
+            if (upper >= threshold) {
+                // Bounds do not help, look through all the centroids.
+                result.distanceCalls += calculated;
+                return assignDirectly(row, distances, result);
+            }
+        }
+        bounds.upper[row] = upper;
+        result.distanceCalls += calculated;
+        result.avoidedDistanceCalls += k - calculated;
+        return cluster;
+    }
+}
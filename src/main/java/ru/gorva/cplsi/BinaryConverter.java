@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.BaseType;
+import ru.gorva.data.LabelDictionary;
+import ru.gorva.data.MappedDataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Converts comma separated files into the binary format of the
+ * {@link MappedDataset}. The file is read twice: the first pass collects the
+ * amount of rows and the distinct labels, the second one writes the values,
+ * so the converted file does not need to fit into memory.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class BinaryConverter {
+
+    /**
+     * @param csv        Comma separated file.
+     * @param binary     Recipient of the binary data set.
+     * @param labelIndex Index of the column which represents the label
+     *                   information, negative if there is no such column.
+     * @param skip       Indices of the columns to be skipped.
+     * @return Amount of the converted rows.
+     * @throws IOException in case of reading or writing errors.
+     */
+    public static int convert(File csv, File binary, int labelIndex, int... skip) throws IOException {
+        DataReader reader = new DataReader(csv);
+        // Collect amount of rows, dimension and distinct labels.
+        final LabelDictionary dictionary = new LabelDictionary();
+        final int[] dimension = {0};
+        int size = reader.forEachRecord(labelIndex, (values, label) -> {
+            dimension[0] = values.length;
+            if (label != null)
+                dictionary.add(label);
+        }, skip);
+        BaseType[] labels = labelIndex < 0 ? null : dictionary.getLabels().toArray(new BaseType[0]);
+        // Write values.
+        try (MappedDataset.Writer writer = new MappedDataset.Writer(binary, size, dimension[0], labels)) {
+            final int[] row = {0};
+            reader.forEachRecord(labelIndex, (values, label) ->
+                    writer.setRow(row[0]++, values, dictionary.indexOf(label)), skip);
+        }
+        return size;
+    }
+
+    /**
+     * Usage: {@code BinaryConverter <csv file> <binary file> <label index> [skipped column...]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BinaryConverter <csv file> <binary file> <label index> [skipped column...]");
+            System.exit(1);
+        }
+        int[] skip = new int[args.length - 3];
+        for (int i = 0; i < skip.length; ++i)
+            skip[i] = Integer.parseInt(args[i + 3]);
+        int size = convert(new File(args[0]), new File(args[1]), Integer.parseInt(args[2]), skip);
+        System.out.println(String.format("%d rows of '%s' converted into '%s'. Skipped columns: %s.",
+                size, args[0], args[1], Arrays.toString(skip)));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.ArrayDataset;
+import ru.gorva.data.ArrayKernels;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.DistanceKernel;
+import ru.gorva.data.DistanceKernels;
+import ru.gorva.data.FloatDataset;
+
+/**
+ * Squared Euclidean distance which calculates the distances between the
+ * rows and the centroids in blocks using the expansion
+ * {@code ||x - c||^2 = ||x||^2 - 2 x.c + ||c||^2}. Norms of the centroids
+ * are calculated once per step, so a block is reduced to the dot products of
+ * a tile of the rows and a tile of the centroids, which both fit into the
+ * cache. Norms of the rows of the row-major {@link ArrayDataset} and
+ * {@link FloatDataset} are cached by the data set. Rows of the other data
+ * sets, e.g. the off-heap ones, are copied into a tile and their norms are
+ * calculated per tile, so no array of the size of the data set is allocated.
+ * <p>
+ * The expansion loses precision for the rows close to the centroids
+ * relative to their norms, negative results are clamped to zero. Single
+ * distances are calculated directly, as by the parent class. Dot products
+ * of the rows of the row-major {@link FloatDataset} are calculated in single
+ * precision.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class BlockedSquaredEuclideanDistance extends VectorizedSquaredEuclideanDistance {
+    /**
+     * Uses the {@link DistanceKernels#getDefault() default} kernel.
+     */
+    public BlockedSquaredEuclideanDistance() {
+        super();
+    }
+
+    /**
+     * @param kernel Kernel of the computations.
+     */
+    public BlockedSquaredEuclideanDistance(DistanceKernel kernel) {
+        super(kernel);
+    }
+
+    @Override
+    public void distances(Dataset data, int from, int to, int[] labels, double[][] centroids,
+                          double[] centroidNorms, double[] sideNorms, int k, double lambda,
+                          double[] result) {
+        DistanceKernel kernel = getKernel();
+        int dimension = data.getDimension();
+        boolean rowMajor = data.getLayout() == Dataset.Layouts.ROW_MAJOR;
+        if (data instanceof FloatDataset && rowMajor) {
+            floatDistances((FloatDataset) data, from, to, labels, narrow(centroids, dimension), centroids,
+                    centroidNorms, sideNorms, k, lambda, result);
+            return;
+        }
+        int tile = Math.max(1, TILE_BYTES / (Double.BYTES * Math.max(dimension, 1)));
+        // Rows of the other layouts are copied into a row-major tile.
+        boolean direct = data instanceof ArrayDataset && rowMajor;
+        double[] values = direct ? ((ArrayDataset) data).getValues() : new double[tile * dimension];
+        // Norms of the copied rows are indexed by the row within the tile.
+        double[] norms = direct ? data.getSquaredNorms() : new double[tile];
+
+        int rowEnd, clusterEnd, offset, label, index, normIndex;
+        double distance;
+        for (int rowStart = from; rowStart < to; rowStart = rowEnd) {
+            rowEnd = Math.min(rowStart + tile, to);
+            if (!direct)
+                for (int row = rowStart; row < rowEnd; ++row) {
+                    offset = (row - rowStart) * dimension;
+                    data.copyRow(row, values, offset);
+                    norms[row - rowStart] = ArrayKernels.dot(values, offset, values, offset, dimension);
+                }
+            for (int clusterStart = 0; clusterStart < k; clusterStart = clusterEnd) {
+                clusterEnd = Math.min(clusterStart + tile, k);
+                for (int row = rowStart; row < rowEnd; ++row) {
+                    offset = direct ? ((ArrayDataset) data).offset(row) : (row - rowStart) * dimension;
+                    normIndex = direct ? row : row - rowStart;
+                    index = (row - from) * k;
+                    kernel.dots(values, offset, centroids, clusterStart, clusterEnd, dimension,
+                            result, index + clusterStart);
+                    label = labels[row];
+                    for (int i = clusterStart; i < clusterEnd; ++i) {
+                        distance = Math.max(0, norms[normIndex] + centroidNorms[i] - 2 * result[index + i]);
+                        if (label >= 0)
+                            distance += lambda * Math.max(0, 1 - 2 * centroids[i][dimension + label] + sideNorms[i]);
+                        result[index + i] = distance;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocked distances of the rows of the row-major {@link FloatDataset}.
+     *
+     * @param narrowed Features of the centroids rounded to {@code float}.
+     */
+    private void floatDistances(FloatDataset data, int from, int to, int[] labels, float[][] narrowed,
+                                double[][] centroids, double[] centroidNorms, double[] sideNorms, int k,
+                                double lambda, double[] result) {
+        DistanceKernel kernel = getKernel();
+        int dimension = data.getDimension();
+        int tile = Math.max(1, TILE_BYTES / (Float.BYTES * Math.max(dimension, 1)));
+        double[] norms = data.getSquaredNorms();
+        float[] values = data.getValues();
+
+        int rowEnd, clusterEnd, label, index;
+        double distance;
+        for (int rowStart = from; rowStart < to; rowStart = rowEnd) {
+            rowEnd = Math.min(rowStart + tile, to);
+            for (int clusterStart = 0; clusterStart < k; clusterStart = clusterEnd) {
+                clusterEnd = Math.min(clusterStart + tile, k);
+                for (int row = rowStart; row < rowEnd; ++row) {
+                    index = (row - from) * k;
+                    kernel.dots(values, data.offset(row), narrowed, clusterStart, clusterEnd, dimension,
+                            result, index + clusterStart);
+                    label = labels[row];
+                    for (int i = clusterStart; i < clusterEnd; ++i) {
+                        distance = Math.max(0, norms[row] + centroidNorms[i] - 2 * result[index + i]);
+                        if (label >= 0)
+                            distance += lambda * Math.max(0, 1 - 2 * centroids[i][dimension + label] + sideNorms[i]);
+                        result[index + i] = distance;
+                    }
+                }
+            }
+        }
+    }
+}
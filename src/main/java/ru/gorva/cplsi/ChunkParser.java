@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.BaseType;
+import ru.gorva.data.NumberParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+/**
+ * Parses the lines of a comma separated file which start within the given
+ * byte range. Ranges of the consecutive parsers may be split at any byte: the
+ * line which crosses the boundary belongs to the range it starts in. Quoted
+ * fields are not supported, parser fails with {@link QuotedFieldException}
+ * as soon as it meets a quote.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+class ChunkParser implements Callable<DataReader.DatasetBuilder> {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final long start;
+    private final long end;
+    private final int[] schema;
+    private final int labelIndex;
+    private final boolean[] skipped;
+    private final int dimension;
+
+    // Reading state.
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private FileChannel channel;
+    private long position;
+    private byte[] line = new byte[256];
+    private int length;
+    private final ByteSequence field = new ByteSequence();
+
+    /**
+     * @param file       File to be parsed.
+     * @param start      First byte of the range.
+     * @param end        Byte after the last byte of the range.
+     * @param schema     Types of all the columns of the file.
+     * @param labelIndex Index of the label column, negative if there is no
+     *                   such column.
+     * @param skipped    Flags of the columns to be skipped.
+     * @param dimension  Amount of the numeric columns.
+     */
+    ChunkParser(File file, long start, long end, int[] schema, int labelIndex, boolean[] skipped, int dimension) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.schema = schema;
+        this.labelIndex = labelIndex;
+        this.skipped = skipped;
+        this.dimension = dimension;
+    }
+
+    @Override
+    public DataReader.DatasetBuilder call() throws IOException {
+        DataReader.DatasetBuilder builder = new DataReader.DatasetBuilder(dimension);
+        double[] row = new double[dimension];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            this.channel = channel;
+            // The line which starts exactly at the range start is preceded
+            // by the line feed, so stepping one byte back and skipping to the
+            // next line never loses it.
+            position = start > 0 ? start - 1 : 0;
+            channel.position(position);
+            buffer.limit(0);
+            if (start > 0)
+                readLine();
+            long lineStart = position;
+            while (lineStart < end && readLine()) {
+                if (length > 0)
+                    builder.accept(row, parseLine(row, lineStart));
+                lineStart = position;
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Reads the next line into the line buffer without the line terminator.
+     *
+     * @return {@code false} if the end of the file is reached.
+     */
+    private boolean readLine() throws IOException {
+        length = 0;
+        boolean read = false;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                if (channel.read(buffer) <= 0) {
+                    buffer.limit(0);
+                    break;
+                }
+                buffer.flip();
+            }
+            read = true;
+            byte[] bytes = buffer.array();
+            int from = buffer.position(), to = buffer.limit(), i = from;
+            while (i < to && bytes[i] != '\n')
+                ++i;
+            append(bytes, from, i);
+            if (i < to) {
+                buffer.position(i + 1);
+                position += i + 1 - from;
+                break;
+            }
+            buffer.position(to);
+            position += to - from;
+        }
+        if (length > 0 && line[length - 1] == '\r')
+            --length;
+        return read;
+    }
+
+    private void append(byte[] bytes, int from, int to) {
+        int count = to - from;
+        if (length + count > line.length)
+            line = java.util.Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        System.arraycopy(bytes, from, line, length, count);
+        length += count;
+    }
+
+    /**
+     * Splits the line buffer into fields and stores numeric ones into the row.
+     *
+     * @return Label of the line, {@code null} if there is no label column.
+     */
+    private BaseType parseLine(double[] row, long lineStart) throws IOException {
+        BaseType label = null;
+        int column = 0, colIndex = 0, from = 0;
+        for (int i = 0; i <= length; ++i) {
+            if (i < length) {
+                byte b = line[i];
+                if (b == '"')
+                    throw new QuotedFieldException();
+                if (b != ',')
+                    continue;
+            }
+            if (column == schema.length)
+                throw new IOException("Unexpected amount of columns at byte " + lineStart + "!");
+            if (column == labelIndex)
+                label = parseLabel(from, i);
+            else if (!skipped[column]) {
+                field.set(line, from, i);
+                double value = NumberParser.parseDouble(field, 0, field.length());
+                if (Double.isNaN(value) && !NumberParser.isNaN(field, 0, field.length()))
+                    throw new IOException("Non numeric value '" + field + "' at byte " + lineStart +
+                            ", column " + column + "!");
+                row[colIndex++] = value;
+            }
+            ++column;
+            from = i + 1;
+        }
+        if (column != schema.length)
+            throw new IOException("Unexpected amount of columns at byte " + lineStart + "!");
+        return label;
+    }
+
+    private BaseType parseLabel(int from, int to) {
+        String string = new String(line, from, to - from, StandardCharsets.UTF_8).trim();
+        // Labels are widened to the type of the column, so equal labels stay equal.
+        return BaseType.createDataValue(string, Math.max(NumberParser.classify(string), schema[labelIndex]));
+    }
+
+    /**
+     * Signals that the file contains quoted fields and should be parsed by
+     * the general purpose reader.
+     */
+    static class QuotedFieldException extends IOException {
+        QuotedFieldException() {
+            super("Quoted fields are not supported!");
+        }
+    }
+
+    /**
+     * Reusable view of the ASCII bytes as characters.
+     */
+    private static class ByteSequence implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        void set(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            this.offset = from;
+            this.length = to - from;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, offset + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+/**
+ * Contingency table of two partitions of the same rows. Element
+ * {@code (i, j)} is the amount of rows which belong to the class {@code i} of
+ * the reference partition and to the cluster {@code j} of the evaluated one.
+ * The table is built in a single pass over the cluster indices, all the
+ * external measures are calculated from the table only.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class ContingencyTable {
+    private final int classes;
+    private final int clusters;
+    private final int[] counts;
+    private final int[] classSizes;
+    private final int[] clusterSizes;
+    private int size;
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param reference Class index for each row, from 0 to {@code k - 1}.
+     * @param evaluated Cluster index for each row, from 0 to {@code k - 1}.
+     * @param k         Number of classes and clusters.
+     */
+    public ContingencyTable(int[] reference, int[] evaluated, int k) {
+        this(reference, evaluated, k, k);
+    }
+
+    /**
+     * Rows with a negative index in any of the partitions are ignored.
+     *
+     * @param reference Class index for each row, from 0 to {@code classes - 1}.
+     * @param evaluated Cluster index for each row, from 0 to {@code clusters - 1}.
+     * @param classes   Number of classes of the reference partition.
+     * @param clusters  Number of clusters of the evaluated partition.
+     */
+    public ContingencyTable(int[] reference, int[] evaluated, int classes, int clusters) {
+        if (reference.length != evaluated.length)
+            throw new IllegalArgumentException("Assignments should be of the same length!");
+        this.classes = classes;
+        this.clusters = clusters;
+        this.counts = new int[classes * clusters];
+        this.classSizes = new int[classes];
+        this.clusterSizes = new int[clusters];
+        int row, column;
+        for (int i = 0; i < reference.length; ++i) {
+            row = reference[i];
+            column = evaluated[i];
+            if (row < 0 || column < 0)
+                continue;
+            ++counts[row * clusters + column];
+            ++classSizes[row];
+            ++clusterSizes[column];
+            ++size;
+        }
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Table
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Amount of rows of the class {@code i} in the cluster {@code j}.
+     */
+    public int get(int i, int j) {
+        return counts[i * clusters + j];
+    }
+
+    /**
+     * @return Amount of rows of the class {@code i}.
+     */
+    public int getClassSize(int i) {
+        return classSizes[i];
+    }
+
+    /**
+     * @return Amount of rows in the cluster {@code j}.
+     */
+    public int getClusterSize(int j) {
+        return clusterSizes[j];
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    public int getClusters() {
+        return clusters;
+    }
+
+    /**
+     * @return Amount of the counted rows.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Measures
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Entropy of the reference partition.
+     */
+    public double classEntropy() {
+        return entropy(classSizes);
+    }
+
+    /**
+     * @return Entropy of the evaluated partition.
+     */
+    public double clusterEntropy() {
+        return entropy(clusterSizes);
+    }
+
+    /**
+     * @return Mutual information of the partitions.
+     */
+    public double mutualInformation() {
+        double information = 0;
+        int count;
+        for (int i = 0; i < classes; ++i)
+            for (int j = 0; j < clusters; ++j) {
+                count = counts[i * clusters + j];
+                if (count != 0)
+                    information += count / (double) size *
+                            Math.log((double) size * count / ((double) classSizes[i] * clusterSizes[j]));
+            }
+        return information;
+    }
+
+    /**
+     * @return Mutual information normalized by the geometric mean of the
+     * entropies. Two single cluster partitions are considered identical.
+     */
+    public double nmi() {
+        double h1 = classEntropy();
+        double h2 = clusterEntropy();
+        if (h1 == 0 || h2 == 0)
+            return h1 == h2 ? 1 : 0;
+        return mutualInformation() / Math.sqrt(h1 * h2);
+    }
+
+    /**
+     * @return Rand index adjusted for chance.
+     */
+    public double adjustedRandIndex() {
+        double index = 0, classPairs = 0, clusterPairs = 0;
+        for (int count : counts)
+            index += pairs(count);
+        for (int count : classSizes)
+            classPairs += pairs(count);
+        for (int count : clusterSizes)
+            clusterPairs += pairs(count);
+        double expected = classPairs * clusterPairs / pairs(size);
+        double max = (classPairs + clusterPairs) / 2;
+        if (max == expected)
+            return 1;
+        return (index - expected) / (max - expected);
+    }
+
+    /**
+     * @return Share of the rows which belong to the majority class of their
+     * cluster.
+     */
+    public double purity() {
+        long total = 0;
+        int max;
+        for (int j = 0; j < clusters; ++j) {
+            max = 0;
+            for (int i = 0; i < classes; ++i)
+                max = Math.max(max, counts[i * clusters + j]);
+            total += max;
+        }
+        return size == 0 ? 0 : total / (double) size;
+    }
+
+    /**
+     * @return Average over the classes weighted by their sizes of the best
+     * F1 score of the class among the clusters.
+     */
+    public double fMeasure() {
+        double result = 0, best;
+        int count;
+        for (int i = 0; i < classes; ++i) {
+            best = 0;
+            for (int j = 0; j < clusters; ++j) {
+                count = counts[i * clusters + j];
+                if (count != 0)
+                    best = Math.max(best, 2.0 * count / (classSizes[i] + clusterSizes[j]));
+            }
+            result += classSizes[i] * best;
+        }
+        return size == 0 ? 0 : result / size;
+    }
+
+    /**
+     * @return Entropy of the given amounts of rows relative to the amount of
+     * the counted rows.
+     */
+    double entropy(int[] sizes) {
+        double entropy = 0;
+        double p;
+        for (int count : sizes) {
+            p = count / (double) size;
+            if (p != 0)
+                entropy -= p * Math.log(p);
+        }
+        return entropy;
+    }
+
+    private static double pairs(int count) {
+        return count * (count - 1.0) / 2;
+    }
+}
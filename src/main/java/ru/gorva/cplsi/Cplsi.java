@@ -19,12 +19,18 @@
  */
 package ru.gorva.cplsi;
 
+import ru.gorva.data.ArrayKernels;
 import ru.gorva.data.BaseType;
-import ru.gorva.data.IntegerType;
-import ru.gorva.data.NumericType;
-import ru.gorva.data.RealType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.FloatDataset;
+import ru.gorva.data.LabelDictionary;
+import ru.gorva.data.LabelVector;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The {@code Cpls } class is an implementation of the "Clustering with
@@ -34,59 +40,139 @@ import java.util.*;
  *         Created on 20.11.16.
  */
 public class Cplsi {
+    static final double TOLERANCE = 0.000_001;  // Maximal centroid shift of the converged clustering.
+
+    /**
+     * Precision of the stored values and of the distance computations.
+     * Sums of the clusters and centroids are always kept in double
+     * precision.
+     */
+    public interface Precisions {
+        int DOUBLE = 0;
+        int SINGLE = 1;
+    }
+
     private int k;                      // Amount of clusters.
-    private Set<BaseType> labelSet;                    // 'cluster label' set
-    private Map<BaseType, Integer> labelMap;           // Mapping from 'cluster label' -> 'cluster label index'
-    private Map<Integer, BaseType> reverseLabelMap;    // Mapping from 'cluster label index' -> 'cluster label'
-    private Map<BaseType[], Integer> labels;           // Index in 'values' -> 'cluster label index'
-    private Map<BaseType[], BaseType> origLabels;     // Index in 'values' -> 'cluster label'
-    private List<BaseType[]> values;                   // Initial values
+    private LabelDictionary dictionary;                // 'cluster label index' <-> 'cluster label'
+    private int[] labels;                              // Index in 'data' -> 'cluster label index' or -1
+    private List<BaseType[]> values;                   // Initial values if provided as rows
+    private Dataset data;                              // Initial values of the selected precision
+    private Dataset source;                            // Initial values as provided
 
     private DistanceMeasure measure;        // Distance measure of the clustering algorithm.
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int fullUpdatePeriod = 1;       // Period of the centroids' recalculation from scratch.
+    private boolean boundPruning;           // Whether to skip distances with the use of HamerlyBounds.
+    private boolean treeFiltering;          // Whether to assign the nodes of the KdTree at once.
+    private KdTree[] trees;                 // Lazily built trees of the rows of each label.
+    private long distanceCalls;             // Amount of distances calculated by the last clustering.
+    private long avoidedDistanceCalls;      // Amount of distances skipped by the last clustering.
+    private long seed = System.nanoTime();  // Seed of the random sampling.
+    private Seeding seeding = new LabeledRowSeeding();  // Strategy of the initial centroids.
+    private int iterations;                 // Amount of iterations of the last clustering.
+    private int restartWarmup = 5;          // Iterations of a restart before it can be abandoned.
+    private double restartMargin = 0.1;     // Relative excess of the objective which abandons a restart.
+
+    private double[][] centroids;           // Centroids of the clusters, cluster index equals to label index.
+    private double[][] spareCentroids;      // Centroids of the step before the previous one, reused by the update.
+    private int[] assignments;              // Index in 'data' -> cluster index
+    private Cluster[] clusters;             // Lazily created view of the clustering result.
+    private double objective = Double.NaN;  // Objective of the last iteration.
+    private double[] restartObjectives;     // Final objective of each restart.
+    private int abandonedRestarts;          // Amount of restarts abandoned by the last clustering.
 
-    private List<DataItem> matrix;           // Concatenated matrix.
+    private HamerlyBounds bounds;                  // Distance bounds of the running clustering.
+    private int[][] nodeClusters;                  // Clusters of the nodes of the trees assigned at once.
+    private AssignmentTask.PartialSums totals;     // Sums of the clusters of the running clustering.
+    private double squaredNormSum;                 // Sum of the squared norms of the rows.
+    private long seedingTime;                      // Time of the seeding of the running clustering.
 
-    private Cluster[] clusters;
+    private List<IterationListener> listeners = new ArrayList<>();  // Listeners of the iterations.
+    private int restart = -1;                      // Index of the restart, -1 for the single clustering.
 
 
     // ------------------------------------------------------------------------
     // Constructors and related initialization methods
     // ------------------------------------------------------------------------
 
+    /**
+     * Adapter for the rows of {@code BaseType} values.
+     *
+     * @param values   Rows of the numeric values.
+     * @param labels   Side information for some of the rows.
+     * @param labelSet Distinct label set.
+     * @param k        Number of clusters.
+     */
     public Cplsi(List<BaseType[]> values, Map<BaseType[], BaseType> labels, Set<BaseType> labelSet, int k) {
-        measure = new SquaredEuclideanDistance();
+        this(Dataset.fromRows(values, Dataset.Layouts.ROW_MAJOR), alignLabels(values, labels), labelSet, k);
         this.values = values;
-        this.origLabels = labels;
+    }
+
+    /**
+     * @param data     Numeric values.
+     * @param labels   Side information aligned with the rows of the
+     *                 {@code data}, {@code null} for the rows without it.
+     * @param labelSet Distinct label set.
+     * @param k        Number of clusters.
+     */
+    public Cplsi(Dataset data, BaseType[] labels, Set<BaseType> labelSet, int k) {
+        this(data, labels, new LabelDictionary(labelSet), k);
+    }
+
+    private Cplsi(Dataset data, BaseType[] labels, LabelDictionary dictionary, int k) {
+        this(data, dictionary.encode(labels), dictionary, k);
+    }
+
+    /**
+     * @param data       Numeric values.
+     * @param labels     Indices of the side information labels aligned with
+     *                   the rows of the {@code data}, {@link LabelVector#NONE}
+     *                   for the rows without it.
+     * @param dictionary Labels of the indices.
+     * @param k          Number of clusters.
+     */
+    public Cplsi(Dataset data, LabelVector labels, LabelDictionary dictionary, int k) {
+        if (labels.size() != data.size())
+            throw new IllegalArgumentException("Labels should be aligned with the rows of the data set!");
+        measure = new VectorizedSquaredEuclideanDistance();
+        this.data = data;
+        this.source = data;
         this.k = k;
-        this.labelSet = labelSet;
-        this.labels = convertLabels(labels, labelSet);
+        this.dictionary = dictionary;
+        this.labels = labels.toArray();
     }
 
     /**
-     * Generate indices for labels and substitute them.
-     *
-     * @param origLabels Labels read from file.
-     * @param labelSet   Distinct label set.
-     * @return Map with labels substituted with corresponding indices.
-     */
-    private Map<BaseType[], Integer> convertLabels(Map<BaseType[], BaseType> origLabels, Set<BaseType> labelSet) {
-        Map<BaseType, Integer> map = new HashMap<>();
-        Map<Integer, BaseType> rmap = new HashMap<>();
-        Object[] distinctLabels = labelSet.toArray();
-        // Save direct and reversed mapping from label value to its index.
-        for (int i = 0; i < distinctLabels.length; ++i) {
-            map.put((BaseType) distinctLabels[i], i);
-            rmap.put(i, (BaseType) distinctLabels[i]);
-        }
-        labelMap = map;
-        reverseLabelMap = rmap;
-        // Substitute labels with corresponding indices.
-        Map<BaseType[], Integer> labels = new HashMap<>();
-        for (Map.Entry<BaseType[], BaseType> value : origLabels.entrySet())
-            labels.put(value.getKey(), map.get(value.getValue()));
-        return labels;
+     * Copy which shares the data set and the settings of the {@code other}
+     * clustering, used as a single restart.
+     */
+    private Cplsi(Cplsi other) {
+        data = other.data;
+        source = other.source;
+        values = other.values;
+        k = other.k;
+        dictionary = other.dictionary;
+        labels = other.labels;
+        measure = other.measure;
+        parallelism = 1;
+        fullUpdatePeriod = other.fullUpdatePeriod;
+        boundPruning = other.boundPruning;
+        treeFiltering = other.treeFiltering;
+        trees = other.trees;
+        seeding = other.seeding;
+        listeners = other.listeners;
     }
 
+    /**
+     * @return Labels of the {@code values} aligned with their indices.
+     */
+    private static BaseType[] alignLabels(List<BaseType[]> values, Map<BaseType[], BaseType> labels) {
+        BaseType[] result = new BaseType[values.size()];
+        int index = 0;
+        for (BaseType[] row : values)
+            result[index++] = labels.get(row);
+        return result;
+    }
 
     // ------------------------------------------------------------------------
     // Getters and Setters
@@ -100,7 +186,273 @@ public class Cplsi {
         this.measure = measure;
     }
 
+    /**
+     * @return Precision of the data set, one of the {@link Precisions}.
+     */
+    public int getPrecision() {
+        return data instanceof FloatDataset ? Precisions.SINGLE : Precisions.DOUBLE;
+    }
+
+    /**
+     * @param precision Precision of the data set, one of the
+     *                  {@link Precisions}. Single precision copies the values
+     *                  into a {@link FloatDataset} unless they are already
+     *                  stored in it, double precision restores the provided
+     *                  data set or widens the provided {@code FloatDataset}.
+     */
+    public void setPrecision(int precision) {
+        if (precision == getPrecision())
+            return;
+        if (precision == Precisions.SINGLE)
+            data = source instanceof FloatDataset ? source : FloatDataset.copyOf(source);
+        else if (precision == Precisions.DOUBLE)
+            data = source instanceof FloatDataset ? source.toLayout(Dataset.Layouts.ROW_MAJOR) : source;
+        else
+            throw new IllegalArgumentException("Unknown precision! Possible values are " +
+                    "Precisions.DOUBLE and Precisions.SINGLE.");
+        clusters = null;
+        trees = null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism Amount of threads used by the clustering, 1 for
+     *                    sequential execution. Result of the clustering does
+     *                    not depend on this value. Default value is the amount
+     *                    of available processors.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism should be positive!");
+        this.parallelism = parallelism;
+    }
+
+    public int getFullUpdatePeriod() {
+        return fullUpdatePeriod;
+    }
+
+    /**
+     * @param fullUpdatePeriod Centroids are recalculated from all the rows
+     *                         every {@code fullUpdatePeriod} iterations. On the
+     *                         other iterations sums of the clusters are updated
+     *                         only by the rows which changed their cluster.
+     *                         Default value 1 disables incremental updates.
+     */
+    public void setFullUpdatePeriod(int fullUpdatePeriod) {
+        if (fullUpdatePeriod < 1)
+            throw new IllegalArgumentException("Period should be positive!");
+        this.fullUpdatePeriod = fullUpdatePeriod;
+    }
+
+    public boolean isBoundPruning() {
+        return boundPruning;
+    }
+
+    /**
+     * @param boundPruning Whether the assignment step should skip distance
+     *                     calculations with the use of the triangle inequality,
+     *                     see {@link HamerlyBounds}. Requires the square root of
+     *                     the distance measure to be Euclidean distance.
+     */
+    public void setBoundPruning(boolean boundPruning) {
+        this.boundPruning = boundPruning;
+    }
+
+    public boolean isTreeFiltering() {
+        return treeFiltering;
+    }
+
+    /**
+     * @param treeFiltering Whether the assignment step should filter the
+     *                      centroids over the {@link KdTree} of the rows and
+     *                      assign its nodes at once. Suits the data sets of
+     *                      the low dimension. Trees are built by the first
+     *                      clustering. Replaces the bound pruning and the
+     *                      incremental updates. The boxes of the nodes are
+     *                      compared by the squared Euclidean distance, so the
+     *                      clustering fails with {@link IllegalStateException}
+     *                      if the measure is not a {@link SquaredEuclideanDistance}.
+     */
+    public void setTreeFiltering(boolean treeFiltering) {
+        this.treeFiltering = treeFiltering;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed Seed of the random sampling used by the
+     *             {@link #clusterMiniBatch(double, int, int, boolean)} and by
+     *             the randomized seedings.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public Seeding getSeeding() {
+        return seeding;
+    }
+
+    /**
+     * @param seeding Strategy of the initial centroids. Default one is the
+     *                deterministic {@link LabeledRowSeeding}.
+     */
+    public void setSeeding(Seeding seeding) {
+        if (seeding == null)
+            throw new IllegalArgumentException("Seeding should not be null!");
+        this.seeding = seeding;
+    }
+
+    /**
+     * @return Amount of iterations of the last {@link #cluster(double)} or
+     * amount of steps of the last mini-batch clustering.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @param listener Listener invoked after each iteration of the
+     *                 clustering.
+     */
+    public void addIterationListener(IterationListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("Listener should not be null!");
+        listeners.add(listener);
+    }
+
+    public void removeIterationListener(IterationListener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getRestartWarmup() {
+        return restartWarmup;
+    }
+
+    /**
+     * @param restartWarmup Amount of iterations each restart of the
+     *                      {@link #clusterRestarts(double, int)} performs
+     *                      before it can be abandoned.
+     */
+    public void setRestartWarmup(int restartWarmup) {
+        if (restartWarmup < 1)
+            throw new IllegalArgumentException("Warmup should be positive!");
+        this.restartWarmup = restartWarmup;
+    }
+
+    public double getRestartMargin() {
+        return restartMargin;
+    }
+
+    /**
+     * @param restartMargin Restart is abandoned if its objective exceeds the
+     *                      best one by more than this share of the best one.
+     */
+    public void setRestartMargin(double restartMargin) {
+        if (!(restartMargin >= 0))
+            throw new IllegalArgumentException("Margin should be non-negative!");
+        this.restartMargin = restartMargin;
+    }
+
+    /**
+     * @return Objective of the last {@link #cluster(double)}: sum of the
+     * distances of the rows to the centroids of their clusters. It is
+     * calculated from the sums of the clusters, so the distance measure is
+     * expected to be Squared Euclidean distance. {@code NaN} after the
+     * mini-batch clustering.
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return Objective of each restart of the last
+     * {@link #clusterRestarts(double, int)}, abandoned restarts have the
+     * objective of their last iteration.
+     */
+    public double[] getRestartObjectives() {
+        return restartObjectives == null ? null : restartObjectives.clone();
+    }
+
+    /**
+     * @return Amount of restarts abandoned by the last
+     * {@link #clusterRestarts(double, int)}.
+     */
+    public int getAbandonedRestarts() {
+        return abandonedRestarts;
+    }
+
+    /**
+     * @return Amount of distances calculated by the last clustering.
+     */
+    public long getDistanceCalls() {
+        return distanceCalls;
+    }
+
+    /**
+     * @return Amount of row to centroid distances skipped by the last
+     * clustering due to the bound pruning.
+     */
+    public long getAvoidedDistanceCalls() {
+        return avoidedDistanceCalls;
+    }
+
+    /**
+     * @return Index of the cluster for each row of the data set. Cluster
+     * index is the index of its label in the iteration order of the label set.
+     */
+    public int[] getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * @return Centroids of the clusters without side information part.
+     */
+    public double[][] getCentroids() {
+        double[][] result = new double[k][];
+        for (int i = 0; i < k; ++i)
+            result[i] = Arrays.copyOf(centroids[i], data.getDimension());
+        return result;
+    }
+
+    /**
+     * @return Label of the cluster with the given index.
+     */
+    public BaseType getClusterLabel(int cluster) {
+        return cluster < dictionary.size() ? dictionary.get(cluster) : null;
+    }
+
+    /**
+     * @return Labels of the clusters indexed by the cluster indices.
+     */
+    public LabelDictionary getLabelDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Adapter which represents the clustering result as {@code Cluster}
+     * objects.
+     *
+     * @return Clusters with the rows of the initial values.
+     */
     public Cluster[] getClusters() {
+        if (clusters == null && assignments != null) {
+            Cluster[] result = new Cluster[k];
+            for (int i = 0; i < k; ++i)
+                result[i] = new Cluster(getClusterLabel(i), new DataItem(DistanceMeasure.wrap(centroids[i]),
+                        true, getClusterLabel(i)));
+            for (int i = 0; i < assignments.length; ++i) {
+                if (assignments[i] < 0)
+                    continue;
+                BaseType[] row = values != null ? values.get(i) : data.toRow(i);
+                result[assignments[i]].add(new DataItem(row, false));
+            }
+            clusters = result;
+        }
         return clusters;
     }
 
@@ -115,183 +467,503 @@ public class Cplsi {
      * @param lambda trade-off parameter.
      */
     public void cluster(double lambda) {
-        DataItem[] prevCentroids = new DataItem[k];
-        matrix = generateMatrix(values, labels);
-        clusters = initializeClusters(matrix, k);
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        restartObjectives = null;
+        abandonedRestarts = 0;
+        try {
+            start(lambda, new Random(seed), pool);
+            while (step(lambda, pool))
+                ;
+        } finally {
+            finish();
+            if (pool != null)
+                pool.shutdown();
+        }
+    }
+
+    /**
+     * Cluster provided values starting from {@code restarts} seedings and
+     * return the result with the lowest objective. Restarts are performed in
+     * parallel, each one by a single thread, iteration by iteration. After
+     * the warmup iterations a restart is abandoned as soon as its objective
+     * exceeds the best objective by the margin, see
+     * {@link #setRestartWarmup(int)} and {@link #setRestartMargin(double)}.
+     * Seeds of the restarts are drawn from the {@link #getSeed() seed}, so
+     * the result does not depend on the parallelism. Restarts differ only by
+     * their seeds, so the seeding is expected to be randomized, e.g.
+     * {@link KMeansPlusPlusSeeding}.
+     *
+     * @param lambda   Trade-off parameter.
+     * @param restarts Amount of the restarts.
+     */
+    public void clusterRestarts(double lambda, int restarts) {
+        if (restarts < 1)
+            throw new IllegalArgumentException("Amount of restarts should be positive!");
+        Random random = new Random(seed);
+        if (treeFiltering && trees == null) {
+            checkTreeMeasure();
+            trees = KdTree.build(data, labels, k);
+        }
+        Cplsi[] runs = new Cplsi[restarts];
+        boolean[] running = new boolean[restarts];
+        boolean[] abandoned = new boolean[restarts];
+        for (int i = 0; i < restarts; ++i) {
+            runs[i] = new Cplsi(this);
+            runs[i].seed = random.nextLong();
+            runs[i].restart = i;
+        }
+        int threads = Math.min(parallelism, restarts);
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>(restarts);
+            for (Cplsi run : runs)
+                tasks.add(() -> {
+                    run.start(lambda, new Random(run.seed), null);
+                    return run.step(lambda, null);
+                });
+            int iteration = 1;
+            while (!tasks.isEmpty()) {
+                List<Boolean> results = invokeAll(pool, tasks);
+                for (int i = 0, j = 0; i < restarts; ++i)
+                    if (iteration == 1 || running[i])
+                        running[i] = results.get(j++);
+                // Abandon the restarts which fall behind the best one.
+                double best = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < restarts; ++i)
+                    if (!abandoned[i])
+                        best = Math.min(best, runs[i].objective);
+                tasks.clear();
+                for (int i = 0; i < restarts; ++i) {
+                    if (running[i] && iteration >= restartWarmup
+                            && runs[i].objective > best * (1 + restartMargin)) {
+                        running[i] = false;
+                        abandoned[i] = true;
+                    }
+                    if (running[i]) {
+                        Cplsi run = runs[i];
+                        tasks.add(() -> run.step(lambda, null));
+                    }
+                }
+                ++iteration;
+            }
+        } finally {
+            for (Cplsi run : runs)
+                run.finish();
+            if (pool != null)
+                pool.shutdown();
+        }
+
+        // Take the result of the best restart.
+        Cplsi best = null;
+        distanceCalls = 0;
+        avoidedDistanceCalls = 0;
+        abandonedRestarts = 0;
+        restartObjectives = new double[restarts];
+        for (int i = 0; i < restarts; ++i) {
+            distanceCalls += runs[i].distanceCalls;
+            avoidedDistanceCalls += runs[i].avoidedDistanceCalls;
+            restartObjectives[i] = runs[i].objective;
+            if (abandoned[i])
+                ++abandonedRestarts;
+            else if (best == null || runs[i].objective < best.objective)
+                best = runs[i];
+        }
+        centroids = best.centroids;
+        assignments = best.assignments;
+        iterations = best.iterations;
+        objective = best.objective;
+        clusters = null;
+    }
+
+    /**
+     * Invokes the tasks in the pool, sequentially if there is no pool.
+     *
+     * @return Results of the tasks in their order.
+     */
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> result = new ArrayList<>(tasks.size());
+        try {
+            if (pool == null)
+                for (Callable<T> task : tasks)
+                    result.add(task.call());
+            else
+                for (Future<T> future : pool.invokeAll(tasks))
+                    result.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Clustering is interrupted!", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Resets the result and seeds the centroids.
+     *
+     * @param random Source of the randomness of the seeding.
+     * @param pool   Pool for the parallel execution, {@code null} for the
+     *               sequential one.
+     */
+    private void start(double lambda, Random random, ForkJoinPool pool) {
+        long time = System.nanoTime();
+        assignments = new int[data.size()];
+        Arrays.fill(assignments, -1);
+        clusters = null;
+        bounds = boundPruning && !treeFiltering ? new HamerlyBounds(data.size()) : null;
+        nodeClusters = null;
+        if (treeFiltering) {
+            checkTreeMeasure();
+            if (trees == null)
+                trees = KdTree.build(data, labels, k);
+            nodeClusters = new int[trees.length][];
+            for (int i = 0; i < trees.length; ++i)
+                if (trees[i] != null) {
+                    nodeClusters[i] = new int[trees[i].size()];
+                    Arrays.fill(nodeClusters[i], -1);
+                }
+        }
+        totals = null;
+        distanceCalls = 0;
+        avoidedDistanceCalls = 0;
+        iterations = 0;
+        objective = Double.POSITIVE_INFINITY;
+        squaredNormSum = data.getSquaredNormSum();
+        centroids = seeding.initialize(data, labels, k, measure, lambda, random, pool);
+        spareCentroids = new double[k][data.getDimension() + k];
+        seedingTime = System.nanoTime() - time;
+    }
+
+    /**
+     * Tree filtering bounds the distances to the boxes of the nodes with the
+     * squared Euclidean distance, so other measures are not supported.
+     */
+    private void checkTreeMeasure() {
+        if (!(measure instanceof SquaredEuclideanDistance))
+            throw new IllegalStateException("Tree filtering requires the squared Euclidean distance measure!");
+    }
 
+    /**
+     * Performs one iteration of the clustering.
+     *
+     * @return Whether the clustering has not converged yet.
+     */
+    private boolean step(double lambda, ForkJoinPool pool) {
+        double[][] prevCentroids = centroids;
+        double distance, maxDistance;
+        long calls = distanceCalls, avoided = avoidedDistanceCalls;
+        long time = System.nanoTime(), assignmentTime;
+        if (bounds != null)
+            distanceCalls += bounds.prepare(prevCentroids, measure, k, lambda);
+        boolean incremental = iterations++ % fullUpdatePeriod != 0 && !treeFiltering;
+        AssignmentTask.PartialSums sums = treeFiltering ? filterCentroids(pool, prevCentroids, lambda)
+                : assignToCentroids(pool, bounds, incremental, prevCentroids, lambda);
+        distanceCalls += sums.distanceCalls;
+        avoidedDistanceCalls += sums.avoidedDistanceCalls;
+        assignmentTime = System.nanoTime() - time;
+        time = System.nanoTime();
+        totals = incremental ? totals.merge(sums) : sums;
+        centroids = updateCentroids(totals, prevCentroids, spareCentroids);
+        objective = calculateObjective(totals, centroids, squaredNormSum, data.getDimension(), lambda);
+        if (bounds != null) {
+            bounds.setInitialized();
+            distanceCalls += bounds.move(prevCentroids, centroids, measure, k, lambda);
+        }
+        // Verify the distance between current and previous step of the clustering.
+        maxDistance = Double.MIN_VALUE;
+        for (int i = 0; i < k; ++i) {
+            distance = measure.distance(centroids[i], prevCentroids[i], k, lambda);
+            if (distance > maxDistance)
+                maxDistance = distance;
+        }
+        spareCentroids = prevCentroids;
+        notifyListeners(objective, sums.reassigned, maxDistance, assignmentTime, System.nanoTime() - time,
+                distanceCalls - calls, avoidedDistanceCalls - avoided);
+        return maxDistance > TOLERANCE;
+    }
+
+    /**
+     * Reports the finished iteration to the listeners. Seeding time is
+     * reported by the first iteration.
+     */
+    private void notifyListeners(double objective, int reassigned, double maxShift, long assignmentTime,
+                                 long updateTime, long distanceCalls, long avoidedDistanceCalls) {
+        if (listeners.isEmpty())
+            return;
+        IterationStatistics statistics = new IterationStatistics(restart, iterations, objective, reassigned,
+                maxShift, iterations == 1 ? seedingTime : 0, assignmentTime, updateTime, distanceCalls,
+                avoidedDistanceCalls);
+        for (IterationListener listener : listeners)
+            listener.iterationFinished(statistics);
+    }
+
+    /**
+     * Releases the state of the finished clustering.
+     */
+    private void finish() {
+        bounds = null;
+        totals = null;
+        spareCentroids = null;
+        nodeClusters = null;
+    }
+
+    /**
+     * Calculates the sum of the distances of the rows to the centroids of
+     * their clusters as {@code sum ||x||^2 - n ||c||^2} for the features and
+     * {@code m - 2 s.c + m ||c||^2} for the side information, where {@code m}
+     * is the amount of the labeled rows of the cluster and {@code s} is the
+     * sum of their one-hot labels.
+     *
+     * @param totals         Sums of the rows of the clusters.
+     * @param centroids      Means of the clusters.
+     * @param squaredNormSum Sum of the squared norms of the rows.
+     * @return Objective of the clustering.
+     */
+    static double calculateObjective(AssignmentTask.PartialSums totals, double[][] centroids,
+                                     double squaredNormSum, int dimension, double lambda) {
+        int k = centroids.length;
+        double result = squaredNormSum, side = 0;
+        double labeled, dot, norm;
+        for (int cluster = 0; cluster < k; ++cluster) {
+            if (totals.counts[cluster] == 0)
+                continue;
+            double[] sum = totals.sums[cluster];
+            double[] centroid = centroids[cluster];
+            result -= ArrayKernels.dot(sum, 0, centroid, 0, dimension);
+            labeled = 0;
+            for (int j = dimension; j < centroid.length; ++j)
+                labeled += sum[j];
+            dot = ArrayKernels.dot(sum, dimension, centroid, dimension, k);
+            norm = ArrayKernels.dot(centroid, dimension, centroid, dimension, k);
+            side += labeled - 2 * dot + labeled * norm;
+        }
+        return Math.max(0, result) + lambda * Math.max(0, side);
+    }
+
+    /**
+     * Cluster provided values with the mini-batch variant of the algorithm.
+     * Each step samples {@code batchSize} rows, assigns them to the nearest
+     * centroids and moves each centroid towards its rows with the learning
+     * rate inverse to the amount of rows the centroid has received so far.
+     * Side information part of the centroid is moved towards the one-hot
+     * label of the labeled rows and towards zero for the other ones, as the
+     * full update does.
+     * <p>
+     * Without the final assignment only the rows sampled by the steps are
+     * assigned, the other ones have cluster index -1.
+     *
+     * @param lambda          Trade-off parameter.
+     * @param batchSize       Amount of rows sampled by each step.
+     * @param maxSteps        Maximal amount of steps. Clustering stops earlier
+     *                        if no centroid has moved more than the
+     *                        convergence tolerance.
+     * @param finalAssignment Whether to assign all the rows to the obtained
+     *                        centroids at the end.
+     */
+    public void clusterMiniBatch(double lambda, int batchSize, int maxSteps, boolean finalAssignment) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size should be positive!");
+        int dimension = data.getDimension();
+        Random random = new Random(seed);
+        long time = System.nanoTime(), assignmentTime, calls;
+        centroids = seeding.initialize(data, labels, k, measure, lambda, random, null);
+        seedingTime = System.nanoTime() - time;
+        assignments = new int[data.size()];
+        Arrays.fill(assignments, -1);
+        clusters = null;
+        distanceCalls = 0;
+        avoidedDistanceCalls = 0;
+        iterations = 0;
+        objective = Double.NaN;
+        restartObjectives = null;
+        abandonedRestarts = 0;
+
+        int[] counts = new int[k];
+        int[] batch = new int[batchSize];
+        int[] batchAssignments = new int[batchSize];
+        double[][] prevCentroids = new double[k][dimension + k];
+        double[] sideNorms;
         double distance, maxDistance;
+        int reassigned;
 
-        do {
-            // Copy centroids from the previous step.
-            int index = 0;
-            for (Cluster cluster : clusters)
-                prevCentroids[index++] = cluster.getCentroid();
-            // Perform one step of the clustering.
-            assignToCentroids(lambda);
-            updateCentroids();
+        for (int step = 0; step < maxSteps; ++step) {
+            iterations = step + 1;
+            time = System.nanoTime();
+            calls = distanceCalls;
+            for (int i = 0; i < k; ++i)
+                System.arraycopy(centroids[i], 0, prevCentroids[i], 0, dimension + k);
+            // Assign sampled rows to the centroids of the previous step.
+            sideNorms = calculateSideNorms(centroids, data.getDimension());
+            for (int i = 0; i < batchSize; ++i) {
+                batch[i] = random.nextInt(data.size());
+                batchAssignments[i] = nearestCentroid(batch[i], sideNorms, lambda);
+            }
+            distanceCalls += (long) batchSize * k;
+            assignmentTime = System.nanoTime() - time;
+            time = System.nanoTime();
+            // Move centroids towards the sampled rows.
+            reassigned = 0;
+            for (int i = 0; i < batchSize; ++i) {
+                int row = batch[i];
+                int cluster = batchAssignments[i];
+                moveCentroid(centroids[cluster], data, row, labels[row], 1.0 / ++counts[cluster]);
+                if (assignments[row] != cluster)
+                    ++reassigned;
+                assignments[row] = cluster;
+            }
             // Verify the distance between current and previous step of the clustering.
             maxDistance = Double.MIN_VALUE;
             for (int i = 0; i < k; ++i) {
-                distance = measure.distance(clusters[i].getCentroid(), prevCentroids[i], k, lambda);
+                distance = measure.distance(centroids[i], prevCentroids[i], k, lambda);
                 if (distance > maxDistance)
                     maxDistance = distance;
             }
-        } while (maxDistance > 0.000_001);
-        // Remove side information from the data items.
-        BaseType[] vals;
-        DataItem item;
-        DataItem curItem;
-        Cluster cluster;
-        for (int i = 0; i < clusters.length; ++i) {
-            cluster = clusters[i];
-            for (int j = 0; j < cluster.size(); ++j) {
-                curItem = cluster.get(j);
-                vals = new BaseType[curItem.size() - k];
-                System.arraycopy(curItem.getValues(), 0, vals, 0, vals.length);
-
-                item = new DataItem(vals, false);
-                cluster.set(j, item);
+            notifyListeners(Double.NaN, reassigned, maxDistance, assignmentTime, System.nanoTime() - time,
+                    distanceCalls - calls, 0);
+            if (maxDistance <= TOLERANCE)
+                break;
+        }
+
+        if (finalAssignment) {
+            ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+            try {
+                distanceCalls += assignToCentroids(pool, null, false, centroids, lambda).distanceCalls;
+            } finally {
+                if (pool != null)
+                    pool.shutdown();
             }
         }
     }
 
     /**
-     * Generate concatenated matrix.
+     * Moves the centroid towards the row: {@code c = c + eta * (x - c)}. Side
+     * information of the row is the one-hot label or zeros if it has no label.
      *
-     * @param values List of the initial values.
-     * @param labels Partial side information.
-     * @return Concatenated data matrix.
-     */
-    private List<DataItem> generateMatrix(List<BaseType[]> values, Map<BaseType[], Integer> labels) {
-        boolean hasSideInfo;
-        BaseType[] newRow;
-        List<DataItem> matrix = new ArrayList<>(values.size());
-        for (BaseType[] item : values) {
-            // Extends item by k values.
-            newRow = new BaseType[item.length + k];
-            // Copy all old values from the unextended item.
-            System.arraycopy(item, 0, newRow, 0, item.length);
-            // Fill other values with zero.
-            for (int i = 0; i < k; ++i)
-                newRow[item.length + i] = IntegerType.ZERO;
-            // Mark item if there are any side information.
-            hasSideInfo = labels.containsKey(item);
-            if (hasSideInfo) {
-                newRow[item.length + labels.get(item)] = IntegerType.ONE;
-                matrix.add(new DataItem(newRow, true, reverseLabelMap.get(labels.get(item))));
-            } else
-                matrix.add(new DataItem(newRow, false));
-        }
-        return matrix;
+     * @param centroid Centroid with side information part.
+     * @param data     Data set without side information.
+     * @param row      Index of the row.
+     * @param label    Label index of the row, -1 if it has no side information.
+     * @param eta      Learning rate.
+     */
+    static void moveCentroid(double[] centroid, Dataset data, int row, int label, double eta) {
+        int dimension = data.getDimension();
+        for (int j = 0; j < dimension; ++j)
+            centroid[j] += eta * (data.get(row, j) - centroid[j]);
+        for (int j = dimension; j < centroid.length; ++j)
+            centroid[j] -= eta * centroid[j];
+        if (label >= 0)
+            centroid[dimension + label] += eta;
     }
 
     /**
-     * Initialize clusters with items related to different clusters.
-     *
-     * @param matrix Concatenated data matrix.
-     * @param k      Number of cluster.
-     * @return Clusters with initialized centroids and labels.
+     * @return Index of the centroid closest to the {@code row}.
      */
-    private Cluster[] initializeClusters(List<DataItem> matrix, int k) {
-        Cluster[] result = new Cluster[k];
-        Map<BaseType, DataItem> centroids = new HashMap<>();
-        int index = 0;
-        DataItem item;
-        // Select random value from the distinct clusters.
-        while (centroids.size() < k && index < matrix.size()) {
-            item = matrix.get(index);
-            if (item.hasSideInformation())
-                centroids.put(item.getLabel(), item);
-            ++index;
-        }
-        index = 0;
-        // Initialize clusters.
-        for (DataItem dataItem : centroids.values())
-            result[index++] = new Cluster(dataItem.getLabel(), dataItem);
-        // Check if centroids for all clusters were initialized.
-        if (index < result.length) {
-            Set<BaseType> uninitialized = new HashSet<>(labelSet);
-            uninitialized.removeAll(centroids.keySet());
-            // Initialize uninitialized clusters.
-            int i = 0;
-            for (BaseType label : uninitialized) {
-                while (matrix.get(i++).hasSideInformation());
-                result[index++] = new Cluster(label, matrix.get(i));
+    private int nearestCentroid(int row, double[] sideNorms, double lambda) {
+        int minIndex = -1;
+        double distance;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < k; ++i) {
+            distance = measure.distance(data, row, labels[row], centroids[i], sideNorms[i], k, lambda);
+            if (distance < minDistance) {
+                minDistance = distance;
+                minIndex = i;
             }
         }
-        return result;
+        return minIndex;
     }
 
     /**
-     * Remove all values from the {@code clusters}.
+     * Assign data values to the nearest centroids and sum them up per cluster.
+     *
+     * @param pool        Pool for the parallel execution, {@code null} for the
+     *                    sequential one.
+     * @param bounds      Distance bounds, {@code null} if the pruning is disabled.
+     * @param incremental Whether only the rows which changed their cluster
+     *                    should be accumulated.
+     * @param centroids   Centroids of the clusters.
+     * @param lambda      Trade-off parameter of the CPLSI algorithm.
+     * @return Sums of the rows assigned to each cluster or their differences
+     * in the incremental mode.
      */
-    private void clearClusters(Cluster[] clusters) {
-        for (Cluster cluster : clusters)
-            cluster.getValues().clear();
+    private AssignmentTask.PartialSums assignToCentroids(ForkJoinPool pool, HamerlyBounds bounds,
+                                                         boolean incremental, double[][] centroids,
+                                                         double lambda) {
+        int dimension = data.getDimension();
+        AssignmentTask task = new AssignmentTask(data, labels, centroids, calculateCentroidNorms(centroids, dimension),
+                calculateSideNorms(centroids, dimension), assignments, measure, bounds, incremental, lambda,
+                0, data.size());
+        return pool == null ? task.compute() : pool.invoke(task);
     }
 
     /**
-     * Assign data values to the nearest centroids.
+     * Assign data values to the nearest centroids by filtering the centroids
+     * over the trees. Sums of the trees are merged in the order of the trees.
      *
-     * @param lambda Trade-off parameter of the CPLSI algorithm.
+     * @param pool      Pool for the parallel execution, {@code null} for the
+     *                  sequential one.
+     * @param centroids Centroids of the clusters.
+     * @param lambda    Trade-off parameter of the CPLSI algorithm.
+     * @return Sums of the rows assigned to each cluster.
      */
-    private void assignToCentroids(double lambda) {
-        int i;
-        int minIndex;
-        double distance;
-        double minDistance;
-        clearClusters(clusters);
-        for (DataItem item : matrix) {
-            // Find closest centroid for the value.
-            minIndex = -1;
-            minDistance = Double.MAX_VALUE;
-            for (i = 0; i < clusters.length; ++i) {
-                distance = measure.distance(item, clusters[i].getCentroid(), k, lambda);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    minIndex = i;
-                }
-            }
-            // Assign item to the closest centroid.
-            clusters[minIndex].add(item);
+    private AssignmentTask.PartialSums filterCentroids(ForkJoinPool pool, double[][] centroids, double lambda) {
+        double[] sideNorms = calculateSideNorms(centroids, data.getDimension());
+        AssignmentTask.PartialSums result = new AssignmentTask.PartialSums(k, data.getDimension() + k);
+        for (int i = 0; i < trees.length; ++i) {
+            if (trees[i] == null)
+                continue;
+            KdTree.FilterTask task = new KdTree.FilterTask(trees[i], centroids, sideNorms, lambda,
+                    assignments, nodeClusters[i]);
+            result.merge(pool == null ? task.compute() : pool.invoke(task));
         }
+        return result;
     }
 
     /**
-     * Update coordinates of the clusters' centroids.
+     * @return Squared norms of the feature parts of the centroids.
      */
-    private void updateCentroids() {
-        NumericType[] mean;
-        for (Cluster cluster : clusters) {
-            if (cluster.size() != 0) {
-                int dataLength = cluster.get(0).size();
-                mean = createRealArray(dataLength);
-                dataLength -= k;
-                for (DataItem row : cluster) {
-                    // Use whole length of the record only if there is side information.
-                    if (row.hasSideInformation())
-                        NumericType.add(mean, row.getValues());
-                    else
-                        NumericType.add(mean, row.getValues(), dataLength);
-                }
-                NumericType.div(mean, cluster.size(), dataLength);
-                NumericType.div(mean, cluster.size(), dataLength, k);
-                cluster.setCentroid(new DataItem(mean, true, cluster.getLabel()));
-            }
-        }
+    static double[] calculateCentroidNorms(double[][] centroids, int dimension) {
+        int k = centroids.length;
+        double[] result = new double[k];
+        for (int cluster = 0; cluster < k; ++cluster)
+            result[cluster] = ArrayKernels.dot(centroids[cluster], 0, centroids[cluster], 0, dimension);
+        return result;
+    }
+
+    /**
+     * @return Squared norms of the side information parts of the centroids.
+     */
+    static double[] calculateSideNorms(double[][] centroids, int dimension) {
+        int k = centroids.length;
+        double[] result = new double[k];
+        for (int cluster = 0; cluster < k; ++cluster)
+            result[cluster] = ArrayKernels.dot(centroids[cluster], dimension, centroids[cluster], dimension, k);
+        return result;
     }
 
     /**
-     * Create array of real values.
+     * Calculate new coordinates of the clusters' centroids into the
+     * {@code result}, so the update does not allocate. Centroids of the empty
+     * clusters are copied from the previous step.
      *
-     * @param n Size of the array.
-     * @return Array of real values.
-     */
-    private NumericType[] createRealArray(int n) {
-        RealType[] mean = new RealType[n];
-        for (int i = 0; i < n; ++i)
-            mean[i] = (RealType) BaseType.createDataValue(BaseType.Types.REAL);
-        return mean;
+     * @param partialSums   Sums of the rows assigned to each cluster.
+     * @param prevCentroids Centroids of the previous step.
+     * @param result        Recipient of the new centroids, should not be the
+     *                      {@code prevCentroids}.
+     * @return {@code result}.
+     */
+    static double[][] updateCentroids(AssignmentTask.PartialSums partialSums, double[][] prevCentroids,
+                                      double[][] result) {
+        for (int cluster = 0; cluster < result.length; ++cluster) {
+            int count = partialSums.counts[cluster];
+            double[] sum = partialSums.sums[cluster];
+            if (count == 0)
+                System.arraycopy(prevCentroids[cluster], 0, result[cluster], 0, sum.length);
+            else
+                ArrayKernels.divide(sum, 0, count, result[cluster], 0, sum.length);
+        }
+        return result;
     }
 
 }
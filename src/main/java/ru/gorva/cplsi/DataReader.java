@@ -21,12 +21,20 @@ package ru.gorva.cplsi;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
+import ru.gorva.data.ArrayDataset;
 import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.LabelDictionary;
+import ru.gorva.data.LabelVector;
+import ru.gorva.data.NumberParser;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * A comma separated file reader.
@@ -35,10 +43,29 @@ import java.util.*;
  *         Created on 25.11.16.
  */
 public class DataReader {
+    /**
+     * Default amount of the records used to infer the schema.
+     */
+    public static final int SAMPLE_SIZE = 1000;
+    /**
+     * Minimal size of the file chunk parsed by a single thread.
+     */
+    public static final int MIN_CHUNK_SIZE = 1 << 20;
+    /**
+     * Maximal length of the array supported by the virtual machines.
+     */
+    static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     private File file;
     private Map<BaseType[], BaseType> labels;
     private Set<BaseType> distinctLabels;
     private List<BaseType[]> values;
+    private Dataset dataset;
+    private LabelDictionary dictionary;
+    private LabelVector rowLabels;
+    private int layout = Dataset.Layouts.ROW_MAJOR;
+    private int[] schema;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
     /**
      * @param fileName Name of the file to be read.
@@ -126,6 +153,306 @@ public class DataReader {
         }
     }
 
+    /**
+     * Reads the file directly into the primitive {@code Dataset}. All values
+     * except the label column and the skipped columns should be numeric.
+     * <p>
+     * Column types are taken from the {@link #setSchema(int...) schema}, which
+     * is inferred from the first {@link #SAMPLE_SIZE} records if not set. Large
+     * files are split at line boundaries into chunks parsed in parallel, the
+     * order of the rows is preserved. Files with quoted fields are parsed
+     * sequentially.
+     *
+     * @param labelIndex Index of the column which represents the label
+     *                   information, negative if there is no such column.
+     * @param skip       Indices of the columns to be skipped.
+     * @return Data set of the read values in the layout specified by
+     * {@link #setLayout(int)}.
+     * @throws IOException in case of reading errors.
+     */
+    public Dataset parseDataset(int labelIndex, int... skip) throws IOException {
+        if (schema == null)
+            schema = inferSchema(SAMPLE_SIZE);
+        boolean[] skipped = skippedColumns(schema.length, skip);
+        for (int column = 0; column < schema.length; ++column)
+            if (!skipped[column] && column != labelIndex && schema[column] == BaseType.Types.STRING)
+                throw new IOException("Non numeric column " + column + "!");
+        int dimension = countFeatures(schema.length, labelIndex, skipped);
+
+        DatasetBuilder builder;
+        try {
+            builder = parseChunks(labelIndex, skipped, dimension);
+        } catch (ChunkParser.QuotedFieldException e) {
+            builder = new DatasetBuilder(dimension);
+            forEachRecord(labelIndex, builder, skip);
+        }
+        this.dataset = builder.build().toLayout(layout);
+        this.dictionary = builder.dictionary;
+        this.rowLabels = builder.buildLabels();
+        this.distinctLabels = dictionary.toSet();
+        return dataset;
+    }
+
+    /**
+     * @return Flags of the columns to be skipped, indices out of the range
+     * are ignored.
+     */
+    private static boolean[] skippedColumns(int columns, int... skip) {
+        boolean[] result = new boolean[columns];
+        for (int column : skip)
+            if (column >= 0 && column < columns)
+                result[column] = true;
+        return result;
+    }
+
+    /**
+     * @return Amount of the columns which are neither skipped nor the label.
+     */
+    private static int countFeatures(int columns, int labelIndex, boolean[] skipped) {
+        int result = 0;
+        for (int column = 0; column < columns; ++column)
+            if (!skipped[column] && column != labelIndex)
+                ++result;
+        return result;
+    }
+
+    /**
+     * Splits the file into chunks and parses them in parallel.
+     */
+    private DatasetBuilder parseChunks(int labelIndex, boolean[] skipped, int dimension) throws IOException {
+        long length = file.length();
+        int chunks = (int) Math.min((length + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE, parallelism * 4L);
+        if (parallelism <= 1 || chunks <= 1)
+            return new ChunkParser(file, 0, length, schema, labelIndex, skipped, dimension).call();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<DatasetBuilder>> tasks = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; ++i)
+                tasks.add(pool.submit(new ChunkParser(file, length * i / chunks, length * (i + 1) / chunks,
+                        schema, labelIndex, skipped, dimension)));
+            List<DatasetBuilder> builders = new ArrayList<>(chunks);
+            for (ForkJoinTask<DatasetBuilder> task : tasks)
+                builders.add(task.get());
+            return DatasetBuilder.concat(builders, dimension);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading is interrupted!", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Infers the types of the columns from the first records of the file.
+     * Type of the column is the widest type of its sampled values: integer
+     * columns are the columns of integers only, real columns are the columns
+     * of numbers.
+     *
+     * @param sampleSize Amount of the records to be inspected.
+     * @return Types of the columns, one of the {@link BaseType.Types}.
+     * @throws IOException in case of reading errors.
+     */
+    public int[] inferSchema(int sampleSize) throws IOException {
+        try (Reader in = new java.io.FileReader(file)) {
+            int[] types = new int[0];
+            int count = 0;
+            for (CSVRecord record : CSVFormat.DEFAULT.parse(in)) {
+                if (count++ == sampleSize)
+                    break;
+                if (record.size() > types.length)
+                    types = Arrays.copyOf(types, record.size());
+                for (int i = 0; i < record.size(); ++i)
+                    types[i] = Math.max(types[i], NumberParser.classify(record.get(i)));
+            }
+            return types;
+        }
+    }
+
+    /**
+     * Reads the file record by record without keeping the read values. All
+     * values except the label column and the skipped columns should be
+     * numeric, all the records should have the same amount of columns.
+     *
+     * @param labelIndex Index of the column which represents the label
+     *                   information, negative if there is no such column.
+     * @param consumer   Receiver of the records.
+     * @param skip       Indices of the columns to be skipped.
+     * @return Amount of the read records.
+     * @throws IOException in case of reading errors.
+     */
+    public int forEachRecord(int labelIndex, RecordConsumer consumer, int... skip) throws IOException {
+        try (Reader in = new java.io.FileReader(file)) {
+            Iterable<CSVRecord> records = CSVFormat.DEFAULT.parse(in);
+            int index, colIndex, rows = 0, dimension = -1;
+            BaseType label;
+            double value;
+            boolean[] skipped = null;
+            double[] row = null;
+
+            for (CSVRecord record : records) {
+                if (dimension < 0) {
+                    skipped = skippedColumns(record.size(), skip);
+                    dimension = countFeatures(record.size(), labelIndex, skipped);
+                    row = new double[dimension];
+                }
+                index = 0;
+                colIndex = 0;
+                label = null;
+                for (String string : record) {
+                    // Save information about record label if any.
+                    if (index == labelIndex) {
+                        ++index;
+                        label = createLabel(string.trim(), labelIndex);
+                        continue;
+                    }
+                    if (index < skipped.length && skipped[index]) {
+                        ++index;
+                        continue;
+                    }
+                    ++index;
+                    value = NumberParser.parseDouble(string);
+                    if (Double.isNaN(value) && !NumberParser.isNaN(string, 0, string.length()))
+                        throw new IOException("Non numeric value '" + string + "' at line " +
+                                record.getRecordNumber() + ", column " + (index - 1) + "!");
+                    if (colIndex == dimension)
+                        throw new IOException("Unexpected amount of columns at line " +
+                                record.getRecordNumber() + "!");
+                    row[colIndex++] = value;
+                }
+                if (colIndex != dimension)
+                    throw new IOException("Unexpected amount of columns at line " +
+                            record.getRecordNumber() + "!");
+                consumer.accept(row, label);
+                ++rows;
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Wraps the label according to the schema if any.
+     */
+    private BaseType createLabel(String string, int labelIndex) {
+        int type = NumberParser.classify(string);
+        // Labels are widened to the type of the column, so equal labels stay equal.
+        if (schema != null && labelIndex < schema.length)
+            type = Math.max(type, schema[labelIndex]);
+        return BaseType.createDataValue(string, type);
+    }
+
+    /**
+     * Receiver of the records read by the
+     * {@link #forEachRecord(int, RecordConsumer, int...)}.
+     */
+    public interface RecordConsumer {
+        /**
+         * @param values Numeric values of the record. The array is reused for
+         *               the next records and should be copied if necessary.
+         * @param label  Label of the record, {@code null} if there is no label
+         *               column.
+         * @throws IOException if the record could not be consumed.
+         */
+        void accept(double[] values, BaseType label) throws IOException;
+    }
+
+    /**
+     * Collects the records into a growing row-major array.
+     */
+    static class DatasetBuilder implements RecordConsumer {
+        private double[] data;
+        private int[] labels = new int[64];
+        private LabelDictionary dictionary = new LabelDictionary();
+        private int rows;
+        private final int dimension;
+
+        /**
+         * @param dimension Amount of the values in each record.
+         */
+        DatasetBuilder(int dimension) {
+            this.dimension = dimension;
+            this.data = new double[Math.max(dimension, 1) * 64];
+        }
+
+        @Override
+        public void accept(double[] values, BaseType label) throws IOException {
+            // Grow buffers if necessary.
+            long length = (long) (rows + 1) * dimension;
+            if (length > data.length)
+                data = Arrays.copyOf(data, (int) Math.min(Math.max(data.length * 2L, checkLength(length)),
+                        MAX_ARRAY_LENGTH));
+            if (rows == labels.length)
+                labels = Arrays.copyOf(labels, (int) Math.min(checkLength(labels.length * 2L), MAX_ARRAY_LENGTH));
+            System.arraycopy(values, 0, data, rows * dimension, dimension);
+            labels[rows++] = label == null ? LabelVector.NONE : dictionary.add(label);
+        }
+
+        /**
+         * Keeps the values without copying if the array is already filled.
+         */
+        ArrayDataset build() {
+            int length = rows * dimension;
+            return new ArrayDataset(data.length == length ? data : Arrays.copyOf(data, length), rows, dimension,
+                    Dataset.Layouts.ROW_MAJOR);
+        }
+
+        LabelDictionary getDictionary() {
+            return dictionary;
+        }
+
+        LabelVector buildLabels() {
+            LabelVector result = LabelVector.create(rows, dictionary.size());
+            for (int row = 0; row < rows; ++row)
+                result.set(row, labels[row]);
+            return result;
+        }
+
+        /**
+         * @return The length if it does not exceed the length of a Java array.
+         * @throws IOException otherwise.
+         */
+        private static long checkLength(long length) throws IOException {
+            if (length > MAX_ARRAY_LENGTH)
+                throw new IOException("Data set of " + length + " values exceeds the capacity of an array (" +
+                        MAX_ARRAY_LENGTH + ")!");
+            return length;
+        }
+
+        /**
+         * Joins the records of the builders preserving their order. Values of
+         * the builders are released as soon as they are copied.
+         */
+        static DatasetBuilder concat(List<DatasetBuilder> builders, int dimension) throws IOException {
+            long rows = 0;
+            for (DatasetBuilder builder : builders)
+                rows += builder.rows;
+            checkLength(rows);
+            DatasetBuilder result = new DatasetBuilder(dimension);
+            result.data = new double[(int) checkLength(rows * dimension)];
+            result.labels = new int[(int) rows];
+            int[] indices;
+            int label;
+            for (DatasetBuilder builder : builders) {
+                System.arraycopy(builder.data, 0, result.data, result.rows * dimension, builder.rows * dimension);
+                builder.data = null;
+                // Labels of the chunks are indexed in the order of the first occurrence in the file.
+                indices = new int[builder.dictionary.size()];
+                for (int i = 0; i < indices.length; ++i)
+                    indices[i] = result.dictionary.add(builder.dictionary.get(i));
+                for (int row = 0; row < builder.rows; ++row) {
+                    label = builder.labels[row];
+                    result.labels[result.rows + row] = label < 0 ? label : indices[label];
+                }
+                result.rows += builder.rows;
+            }
+            return result;
+        }
+    }
+
     /**
      * Derives distinct set of the label values.
      * @param labels Labels for the values.
@@ -149,6 +476,78 @@ public class DataReader {
         return labels;
     }
 
+    /**
+     * @return Labels aligned with the rows of the {@link #getDataset()},
+     * decoded from the {@link #getLabelVector()}.
+     */
+    public BaseType[] getRowLabels() {
+        return rowLabels == null ? null : dictionary.decode(rowLabels);
+    }
+
+    /**
+     * @return Label indices aligned with the rows of the {@link #getDataset()}.
+     */
+    public LabelVector getLabelVector() {
+        return rowLabels;
+    }
+
+    /**
+     * @return Labels of the {@link #getDataset()} with their indices in the
+     * order of the first occurrence in the file.
+     */
+    public LabelDictionary getLabelDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return Data set read by the {@link #parseDataset(int, int...)}.
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @param layout Layout of the data set produced by the
+     *               {@link #parseDataset(int, int...)}, one of the
+     *               {@link Dataset.Layouts}.
+     */
+    public void setLayout(int layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * @return Types of the columns used by the {@link #parseDataset(int, int...)},
+     * {@code null} if neither set nor inferred yet.
+     */
+    public int[] getSchema() {
+        return schema;
+    }
+
+    /**
+     * @param schema Types of all the columns of the file, one of the
+     *               {@link BaseType.Types}. Inferred from the file if
+     *               {@code null}.
+     */
+    public void setSchema(int... schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * @return Maximal amount of the threads used to parse the file.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism Maximal amount of the threads used to parse the file.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism should be positive!");
+        this.parallelism = parallelism;
+    }
+
     /**
      * @return Data values of the file.
      */
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.LabelDictionary;
+import ru.gorva.data.LabelVector;
+import ru.gorva.data.MappedDataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Cache of the parsed data sets. Entries are keyed by the canonical path,
+ * size and modification time of the file together with the label and
+ * skipped columns, so a modified file is parsed again. Entries are evicted
+ * in the least recently used order when their total size exceeds the
+ * budget.
+ * <p>
+ * If the snapshot directory is set, parsed files are also converted into
+ * the {@link MappedDataset} binary snapshots, which are mapped instead of
+ * parsing on the next cache misses, including the ones of the other
+ * processes.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class DatasetCache {
+    /**
+     * Default budget of the cache in bytes.
+     */
+    public static final long DEFAULT_BUDGET = 256L << 20;
+
+    private final long budget;
+    private final File snapshotDirectory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private int parses;
+
+    /**
+     * @param budget Maximal total size of the cached data sets in bytes.
+     */
+    public DatasetCache(long budget) {
+        this(budget, null);
+    }
+
+    /**
+     * @param budget            Maximal total size of the cached data sets in
+     *                          bytes.
+     * @param snapshotDirectory Directory of the binary snapshots,
+     *                          {@code null} if the snapshots are not used.
+     */
+    public DatasetCache(long budget, File snapshotDirectory) {
+        if (budget < 0)
+            throw new IllegalArgumentException("Budget should be non negative!");
+        this.budget = budget;
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * @return Cached or freshly read data set described by the catalog.
+     * @throws IOException in case of reading errors.
+     */
+    public Entry get(DatasetCatalog.Descriptor descriptor) throws IOException {
+        return get(descriptor.getFile(), descriptor.getLabelIndex(), descriptor.getSkip());
+    }
+
+    /**
+     * Returns the cached data set or reads it. Concurrent requests wait for
+     * the single read of the file.
+     *
+     * @param file       File with data set.
+     * @param labelIndex Index of the label column.
+     * @param skip       Indices of the columns to be skipped.
+     * @return Data set with its labels.
+     * @throws IOException in case of reading errors.
+     */
+    public synchronized Entry get(File file, int labelIndex, int... skip) throws IOException {
+        String key = key(file, labelIndex, skip);
+        Entry entry = entries.get(key);
+        if (entry != null)
+            return entry;
+        entry = snapshotDirectory != null ? readSnapshot(file, key, labelIndex, skip) : parse(file, labelIndex, skip);
+        if (entry.bytes <= budget) {
+            entries.put(key, entry);
+            bytes += entry.bytes;
+            evict();
+        }
+        return entry;
+    }
+
+    private Entry parse(File file, int labelIndex, int... skip) throws IOException {
+        DataReader reader = new DataReader(file);
+        Dataset dataset = reader.parseDataset(labelIndex, skip);
+        ++parses;
+        return new Entry(dataset, reader.getLabelVector(), reader.getLabelDictionary());
+    }
+
+    /**
+     * Maps the snapshot of the file, converting the file if there is no
+     * snapshot yet.
+     */
+    private Entry readSnapshot(File file, String key, int labelIndex, int... skip) throws IOException {
+        if (!snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs())
+            throw new IOException("Unable to create directory " + snapshotDirectory + "!");
+        File snapshot = new File(snapshotDirectory,
+                file.getName() + '-' + Integer.toHexString(key.hashCode()) + ".bin");
+        if (!snapshot.isFile()) {
+            File temporary = new File(snapshotDirectory, snapshot.getName() + ".tmp");
+            BinaryConverter.convert(file, temporary, labelIndex, skip);
+            ++parses;
+            if (!temporary.renameTo(snapshot) && !snapshot.isFile())
+                throw new IOException("Unable to create snapshot " + snapshot + "!");
+        }
+        MappedDataset dataset = MappedDataset.open(snapshot);
+        return new Entry(dataset, dataset.getLabelVector(), dataset.getLabelDictionary());
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > budget && iterator.hasNext()) {
+            bytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    private static String key(File file, int labelIndex, int... skip) throws IOException {
+        File canonical = file.getCanonicalFile();
+        if (!canonical.isFile())
+            throw new IOException("File " + file + " does not exist!");
+        return canonical.getPath() + '|' + canonical.length() + '|' + canonical.lastModified() + '|' +
+                labelIndex + '|' + Arrays.toString(skip);
+    }
+
+    /**
+     * Removes all the entries, snapshots are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return Total size of the cached data sets in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Amount of the cached data sets.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Amount of the performed reads of the text files.
+     */
+    public synchronized int getParses() {
+        return parses;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Data set with the labels aligned with its rows. Shared between the
+     * callers and should not be modified.
+     */
+    public static class Entry {
+        private final Dataset dataset;
+        private final LabelVector labels;
+        private final LabelDictionary dictionary;
+        private final long bytes;
+
+        Entry(Dataset dataset, LabelVector labels, LabelDictionary dictionary) {
+            this.dataset = dataset;
+            this.labels = labels;
+            this.dictionary = dictionary;
+            // Values and indices of the labels.
+            this.bytes = (long) dataset.size() * dataset.getDimension() * Double.BYTES +
+                    (long) labels.size() * labels.getElementBytes();
+        }
+
+        public Dataset getDataset() {
+            return dataset;
+        }
+
+        /**
+         * @return Indices of the labels aligned with the rows.
+         */
+        public LabelVector getLabels() {
+            return labels;
+        }
+
+        public LabelDictionary getLabelDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * @return Labels aligned with the rows.
+         */
+        public BaseType[] getRowLabels() {
+            return dictionary.decode(labels);
+        }
+
+        public Set<BaseType> getDistinctLabels() {
+            return dictionary.toSet();
+        }
+
+        /**
+         * @return Estimated size of the data set in bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
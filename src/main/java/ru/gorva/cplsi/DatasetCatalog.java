@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Catalog of the data sets stored in the UCI repository layout: a directory
+ * per data set with the {@code Index} listing its files and the free text
+ * {@code .names} or {@code .tag} descriptions of the attributes. Label column
+ * is the attribute described as class, type, diagnosis or outcome, the
+ * attributes described as identifiers are skipped. If no description is
+ * found, the last column is considered as the label column.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class DatasetCatalog {
+    private static final Pattern INDEX_LINE = Pattern.compile("^\\d{2} \\w{3} \\d{4}\\s+\\d+\\s+(\\S+)$");
+    private static final Pattern TAG_LINE = Pattern.compile("^\\s*(\\w+),\\s*\\w+\\s*--\\s*(.*)$");
+    private static final Pattern NAMES_SECTION = Pattern.compile("^\\d+\\.\\s.*");
+    private static final Pattern NAMES_ATTRIBUTE = Pattern.compile("^\\s*(\\d+)[.)]\\s*(.*)$");
+    private static final Pattern NAMES_NOTE = Pattern.compile("(\\d+)(?:st|nd|rd|th) attribute is (?:the )?class",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLASS = Pattern.compile("\\bclass\\b|^type\\b|^diagnosis\\b|^outcome\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern IDENTIFIER = Pattern.compile("\\bid\\b|identifier|code number",
+            Pattern.CASE_INSENSITIVE);
+
+    private final File root;
+
+    /**
+     * @param root Directory with the data set directories.
+     */
+    public DatasetCatalog(File root) {
+        this.root = root;
+    }
+
+    /**
+     * @return Descriptors of all the data files listed by the data set
+     * directories, ordered by the directory and then by the listing order.
+     * @throws IOException in case of reading errors.
+     */
+    public List<Descriptor> list() throws IOException {
+        List<Descriptor> descriptors = new ArrayList<>();
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories == null)
+            return descriptors;
+        Arrays.sort(directories);
+        for (File directory : directories)
+            for (File file : listDataFiles(directory))
+                descriptors.add(describe(file));
+        return descriptors;
+    }
+
+    /**
+     * @param file Data file of the catalog.
+     * @return Descriptor of the data file.
+     * @throws IOException in case of reading errors.
+     */
+    public Descriptor describe(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String base = file.getName().replaceFirst("\\.[^.]*$", "");
+        int columns = countColumns(file);
+        Descriptor descriptor = null;
+        File tag = new File(directory, base + ".tag");
+        if (tag.isFile())
+            descriptor = fromTag(file, tag, columns);
+        File names = new File(directory, base + ".names");
+        if (!names.isFile()) {
+            File[] all = directory.listFiles((dir, name) -> name.endsWith(".names"));
+            names = all != null && all.length == 1 ? all[0] : null;
+        }
+        if (descriptor == null && names != null)
+            descriptor = fromNames(file, names, columns);
+        return descriptor != null ? descriptor : new Descriptor(file, columns - 1);
+    }
+
+    /**
+     * @return Data files listed by the {@code Index} of the directory or all
+     * the {@code .data} files if there is no index.
+     */
+    private List<File> listDataFiles(File directory) throws IOException {
+        List<File> files = new ArrayList<>();
+        File index = new File(directory, "Index");
+        if (index.isFile()) {
+            Matcher matcher;
+            for (String line : Files.readAllLines(index.toPath(), StandardCharsets.ISO_8859_1))
+                if ((matcher = INDEX_LINE.matcher(line.trim())).matches() && matcher.group(1).endsWith(".data")
+                        && new File(directory, matcher.group(1)).isFile())
+                    files.add(new File(directory, matcher.group(1)));
+        } else {
+            File[] all = directory.listFiles((dir, name) -> name.endsWith(".data"));
+            if (all != null) {
+                Arrays.sort(all);
+                files.addAll(Arrays.asList(all));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads the attribute list of the form {@code NAME, TYPE -- description}.
+     */
+    private Descriptor fromTag(File file, File tag, int columns) throws IOException {
+        List<String> attributes = new ArrayList<>();
+        Matcher matcher;
+        for (String line : Files.readAllLines(tag.toPath(), StandardCharsets.ISO_8859_1))
+            if ((matcher = TAG_LINE.matcher(line)).matches())
+                attributes.add(matcher.group(1) + ' ' + matcher.group(2));
+        return fromAttributes(file, attributes, columns);
+    }
+
+    /**
+     * Reads the numbered list of the "Attribute Information" section or the
+     * note which points to the class attribute.
+     */
+    private Descriptor fromNames(File file, File names, int columns) throws IOException {
+        List<String> attributes = new ArrayList<>();
+        boolean section = false;
+        Matcher matcher;
+        for (String line : Files.readAllLines(names.toPath(), StandardCharsets.ISO_8859_1)) {
+            if ((matcher = NAMES_NOTE.matcher(line)).find()) {
+                int label = Integer.parseInt(matcher.group(1)) - 1;
+                if (label < columns)
+                    return new Descriptor(file, label);
+            }
+            if (NAMES_SECTION.matcher(line).matches())
+                section = line.toLowerCase().contains("attribute information");
+            else if (section && (matcher = NAMES_ATTRIBUTE.matcher(line)).matches()
+                    && Integer.parseInt(matcher.group(1)) == attributes.size() + 1)
+                attributes.add(matcher.group(2));
+        }
+        return fromAttributes(file, attributes, columns);
+    }
+
+    /**
+     * @return Descriptor if the attributes match the columns and one of them
+     * is the class, {@code null} otherwise.
+     */
+    private Descriptor fromAttributes(File file, List<String> attributes, int columns) {
+        int label = -1;
+        List<Integer> skip = new ArrayList<>();
+        for (int i = 0; i < attributes.size() && i < columns; ++i) {
+            String attribute = attributes.get(i);
+            if (label < 0 && CLASS.matcher(attribute).find())
+                label = i;
+            else if (IDENTIFIER.matcher(attribute).find())
+                skip.add(i);
+        }
+        if (label < 0)
+            return null;
+        int[] skipped = new int[skip.size()];
+        for (int i = 0; i < skipped.length; ++i)
+            skipped[i] = skip.get(i);
+        return new Descriptor(file, label, skipped);
+    }
+
+    /**
+     * @return Amount of the comma separated columns in the first line.
+     */
+    private static int countColumns(File file) throws IOException {
+        try (java.io.BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line = reader.readLine();
+            return line == null ? 0 : line.split(",", -1).length;
+        }
+    }
+
+    /**
+     * Data file with its label and skipped columns.
+     */
+    public static class Descriptor {
+        private final File file;
+        private final int labelIndex;
+        private final int[] skip;
+
+        public Descriptor(File file, int labelIndex, int... skip) {
+            this.file = file;
+            this.labelIndex = labelIndex;
+            this.skip = skip;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public int getLabelIndex() {
+            return labelIndex;
+        }
+
+        public int[] getSkip() {
+            return skip;
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath() + " label=" + labelIndex + " skip=" + Arrays.toString(skip);
+        }
+    }
+}
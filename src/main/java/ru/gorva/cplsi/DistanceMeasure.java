@@ -19,6 +19,11 @@
  */
 package ru.gorva.cplsi;
 
+import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.IntegerType;
+import ru.gorva.data.RealType;
+
 /**
  * This interface represents the distance measure for DataItems.
  *
@@ -36,4 +41,88 @@ public interface DistanceMeasure {
      * @return Distance between specified {@code DataItem} objects.
      */
     double distance(DataItem obj1, DataItem obj2, int k, double lambda);
+
+    /**
+     * Calculates distance between the row of the data set and the centroid.
+     * Side information of the row is represented by the index of its label,
+     * i.e. the position of the single one in its side information part.
+     * <p>
+     * Default implementation wraps values into {@code DataItem} objects,
+     * implementations should override it with primitive computations.
+     *
+     * @param data      Data set without side information.
+     * @param row       Index of the row.
+     * @param label     Label index of the row, -1 if it has no side information.
+     * @param centroid  Centroid, the side information part of length {@code k}
+     *                  follows the features.
+     * @param sideNorm  Squared norm of the side information part of the centroid.
+     * @param k         Number of clusters.
+     * @param lambda    Trade-off parameter.
+     * @return Distance between the row and the centroid.
+     */
+    default double distance(Dataset data, int row, int label, double[] centroid,
+                            double sideNorm, int k, double lambda) {
+        BaseType[] values = new BaseType[data.getDimension() + k];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = i < data.getDimension() ? new RealType(data.get(row, i))
+                    : i == data.getDimension() + label ? IntegerType.ONE : IntegerType.ZERO;
+        return distance(new DataItem(values, label >= 0),
+                new DataItem(wrap(centroid), true), k, lambda);
+    }
+
+    /**
+     * Calculates distances between the rows of the range and all the
+     * centroids. Distance between the row {@code from + r} and the centroid
+     * {@code i} is stored at {@code result[r * k + i]}.
+     * <p>
+     * Default implementation calculates the distances one by one,
+     * implementations could process the rows and the centroids in blocks.
+     *
+     * @param data          Data set without side information.
+     * @param from          First row of the range, inclusive.
+     * @param to            Last row of the range, exclusive.
+     * @param labels        Label index for each row of the data set, -1 if
+     *                      the row has no side information.
+     * @param centroids     Centroids, the side information part of length
+     *                      {@code k} follows the features.
+     * @param centroidNorms Squared norms of the feature parts of the centroids.
+     * @param sideNorms     Squared norms of the side information parts of the
+     *                      centroids.
+     * @param k             Number of clusters.
+     * @param lambda        Trade-off parameter.
+     * @param result        Recipient of at least {@code (to - from) * k}
+     *                      distances.
+     */
+    default void distances(Dataset data, int from, int to, int[] labels, double[][] centroids,
+                           double[] centroidNorms, double[] sideNorms, int k, double lambda,
+                           double[] result) {
+        for (int row = from, index = 0; row < to; ++row)
+            for (int i = 0; i < k; ++i)
+                result[index++] = distance(data, row, labels[row], centroids[i], sideNorms[i], k, lambda);
+    }
+
+    /**
+     * Calculates distance between two centroids including their side
+     * information parts.
+     *
+     * @param centroid1 Centroid 1.
+     * @param centroid2 Centroid 2.
+     * @param k         Number of clusters.
+     * @param lambda    Trade-off parameter.
+     * @return Distance between the centroids.
+     */
+    default double distance(double[] centroid1, double[] centroid2, int k, double lambda) {
+        return distance(new DataItem(wrap(centroid1), true),
+                new DataItem(wrap(centroid2), true), k, lambda);
+    }
+
+    /**
+     * @return Values wrapped into {@code RealType} objects.
+     */
+    static BaseType[] wrap(double[] values) {
+        BaseType[] result = new BaseType[values.length];
+        for (int i = 0; i < values.length; ++i)
+            result[i] = new RealType(values[i]);
+        return result;
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import java.util.Arrays;
+
+/**
+ * Distance bounds of the Hamerly's accelerated k-means adapted to the CPLSI
+ * distance. Each row keeps an upper bound of the distance to its centroid and
+ * a lower bound of the distance to any other centroid, so the assignment step
+ * could skip the rows which certainly keep their cluster.
+ * <p>
+ * The CPLSI distance is a squared Euclidean distance over the features for
+ * the rows without side information and a squared Euclidean distance over the
+ * features and the side information scaled by {@code sqrt(lambda)} for the
+ * rows with it. Bounds are kept for the square root of the distance, and the
+ * centroid movements and separations are tracked in both spaces. The distance
+ * measure is required to be of that form, e.g. {@link SquaredEuclideanDistance}.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+class HamerlyBounds {
+    static final int FEATURES = 0;      // Space of the rows without side information.
+    static final int WEIGHTED = 1;      // Space of the rows with side information.
+
+    final double[] upper;               // Upper bound of the distance to the assigned centroid.
+    final double[] lower;               // Lower bound of the distance to the other centroids.
+    private boolean initialized;
+
+    // Per space values, see FEATURES and WEIGHTED.
+    final double[][] movements = new double[2][];       // Movement of each centroid on the last step.
+    final double[][] halfSeparations = new double[2][]; // Half of the distance to the closest other centroid.
+    final int[] maxMovementIndex = new int[2];
+    final double[] maxMovement = new double[2];
+    final double[] secondMaxMovement = new double[2];
+
+    HamerlyBounds(int size) {
+        this.upper = new double[size];
+        this.lower = new double[size];
+    }
+
+    /**
+     * @return Whether bounds of all the rows were calculated by the previous
+     * assignment step.
+     */
+    boolean isInitialized() {
+        return initialized;
+    }
+
+    void setInitialized() {
+        this.initialized = true;
+    }
+
+    /**
+     * Calculates separations of the centroids before the assignment step.
+     *
+     * @return Amount of calculated distances.
+     */
+    long prepare(double[][] centroids, DistanceMeasure measure, int k, double lambda) {
+        for (int space = FEATURES; space <= WEIGHTED; ++space) {
+            double weight = space == FEATURES ? 0 : lambda;
+            double[] half = new double[k];
+            Arrays.fill(half, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < k; ++i)
+                for (int j = i + 1; j < k; ++j) {
+                    double distance = 0.5 * Math.sqrt(measure.distance(centroids[i], centroids[j], k, weight));
+                    if (distance < half[i])
+                        half[i] = distance;
+                    if (distance < half[j])
+                        half[j] = distance;
+                }
+            halfSeparations[space] = half;
+        }
+        return (long) k * (k - 1);
+    }
+
+    /**
+     * Calculates movements of the centroids after the update step.
+     *
+     * @return Amount of calculated distances.
+     */
+    long move(double[][] prevCentroids, double[][] centroids, DistanceMeasure measure, int k, double lambda) {
+        for (int space = FEATURES; space <= WEIGHTED; ++space) {
+            double weight = space == FEATURES ? 0 : lambda;
+            double[] movement = new double[k];
+            double max = 0, secondMax = 0;
+            int maxIndex = -1;
+            for (int i = 0; i < k; ++i) {
+                movement[i] = Math.sqrt(measure.distance(centroids[i], prevCentroids[i], k, weight));
+                if (movement[i] > max) {
+                    secondMax = max;
+                    max = movement[i];
+                    maxIndex = i;
+                } else if (movement[i] > secondMax)
+                    secondMax = movement[i];
+            }
+            movements[space] = movement;
+            maxMovement[space] = max;
+            secondMaxMovement[space] = secondMax;
+            maxMovementIndex[space] = maxIndex;
+        }
+        return 2L * k;
+    }
+}
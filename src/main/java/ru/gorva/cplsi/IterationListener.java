@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+/**
+ * Listener of the iterations of the {@link Cplsi} clustering. It is invoked
+ * by the thread of the clustering after each iteration, restarts of the
+ * {@link Cplsi#clusterRestarts(double, int)} invoke it concurrently.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public interface IterationListener {
+    /**
+     * @param statistics Metrics of the finished iteration.
+     */
+    void iterationFinished(IterationStatistics statistics);
+}
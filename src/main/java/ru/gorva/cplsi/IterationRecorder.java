@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listener which records the statistics of the iterations and writes them
+ * as CSV or JSON. Recording is synchronized, so the recorder could be shared
+ * by the restarts and by several clusterings.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class IterationRecorder implements IterationListener {
+    private static final String[] COLUMNS = {"restart", "iteration", "objective", "reassigned", "maxShift",
+            "seedingTime", "assignmentTime", "updateTime", "distanceCalls", "avoidedDistanceCalls"};
+
+    private final List<IterationStatistics> statistics = new ArrayList<>();
+
+    @Override
+    public synchronized void iterationFinished(IterationStatistics statistics) {
+        this.statistics.add(statistics);
+    }
+
+    /**
+     * @return Recorded statistics in the order of their arrival.
+     */
+    public synchronized List<IterationStatistics> getStatistics() {
+        return new ArrayList<>(statistics);
+    }
+
+    public synchronized void clear() {
+        statistics.clear();
+    }
+
+    /**
+     * Writes the statistics as comma separated values with the header line.
+     * Times are in nanoseconds.
+     *
+     * @param out Recipient of the values.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append(String.join(",", COLUMNS)).append('\n');
+        for (IterationStatistics item : getStatistics()) {
+            Object[] values = values(item);
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0)
+                    out.append(',');
+                out.append(String.valueOf(values[i]));
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Writes the statistics as JSON array of objects, one per line. Not
+     * finite objectives are written as {@code null}.
+     *
+     * @param out Recipient of the values.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append('[');
+        boolean first = true;
+        for (IterationStatistics item : getStatistics()) {
+            out.append(first ? "\n  {" : ",\n  {");
+            first = false;
+            Object[] values = values(item);
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0)
+                    out.append(", ");
+                out.append('"').append(COLUMNS[i]).append("\": ");
+                if (values[i] instanceof Double && (((Double) values[i]).isNaN()
+                        || ((Double) values[i]).isInfinite()))
+                    out.append("null");
+                else
+                    out.append(String.valueOf(values[i]));
+            }
+            out.append('}');
+        }
+        out.append("\n]\n");
+    }
+
+    /**
+     * @return Values of the statistics in the order of the {@link #COLUMNS}.
+     */
+    private static Object[] values(IterationStatistics item) {
+        return new Object[]{item.getRestart(), item.getIteration(), item.getObjective(), item.getReassigned(),
+                item.getMaxShift(), item.getSeedingTime(), item.getAssignmentTime(), item.getUpdateTime(),
+                item.getDistanceCalls(), item.getAvoidedDistanceCalls()};
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+/**
+ * Metrics of a single iteration of the {@link Cplsi} clustering. Steps of the
+ * mini-batch clustering are reported as iterations over the sampled rows.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class IterationStatistics {
+    private final int restart;
+    private final int iteration;
+    private final double objective;
+    private final int reassigned;
+    private final double maxShift;
+    private final long seedingTime;
+    private final long assignmentTime;
+    private final long updateTime;
+    private final long distanceCalls;
+    private final long avoidedDistanceCalls;
+
+    /**
+     * @param restart              Index of the restart, -1 for the single
+     *                             clustering.
+     * @param iteration            Index of the iteration starting with 1.
+     * @param objective            Objective after the iteration.
+     * @param reassigned           Amount of rows which changed their cluster.
+     * @param maxShift             Maximal distance between the centroid and
+     *                             its previous position.
+     * @param seedingTime          Time of the seeding in nanoseconds, reported
+     *                             by the first iteration only.
+     * @param assignmentTime       Time of the assignment step in nanoseconds.
+     * @param updateTime           Time of the update step in nanoseconds.
+     * @param distanceCalls        Amount of distances calculated by the
+     *                             iteration.
+     * @param avoidedDistanceCalls Amount of distances skipped by the
+     *                             iteration due to the bound pruning.
+     */
+    public IterationStatistics(int restart, int iteration, double objective, int reassigned, double maxShift,
+                               long seedingTime, long assignmentTime, long updateTime, long distanceCalls,
+                               long avoidedDistanceCalls) {
+        this.restart = restart;
+        this.iteration = iteration;
+        this.objective = objective;
+        this.reassigned = reassigned;
+        this.maxShift = maxShift;
+        this.seedingTime = seedingTime;
+        this.assignmentTime = assignmentTime;
+        this.updateTime = updateTime;
+        this.distanceCalls = distanceCalls;
+        this.avoidedDistanceCalls = avoidedDistanceCalls;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Index of the restart, -1 for the single clustering.
+     */
+    public int getRestart() {
+        return restart;
+    }
+
+    /**
+     * @return Index of the iteration starting with 1.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * @return Objective after the iteration, see {@link Cplsi#getObjective()}.
+     * {@code NaN} for the mini-batch clustering.
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return Amount of rows which changed their cluster, all the assigned
+     * rows on the first iteration.
+     */
+    public int getReassigned() {
+        return reassigned;
+    }
+
+    /**
+     * @return Maximal distance between the centroid and its previous position
+     * in terms of the distance measure of the clustering.
+     */
+    public double getMaxShift() {
+        return maxShift;
+    }
+
+    /**
+     * @return Time of the seeding in nanoseconds, 0 after the first iteration.
+     */
+    public long getSeedingTime() {
+        return seedingTime;
+    }
+
+    /**
+     * @return Time of the assignment step in nanoseconds.
+     */
+    public long getAssignmentTime() {
+        return assignmentTime;
+    }
+
+    /**
+     * @return Time of the update of the centroids and bounds in nanoseconds.
+     */
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * @return Amount of distances calculated by the iteration.
+     */
+    public long getDistanceCalls() {
+        return distanceCalls;
+    }
+
+    /**
+     * @return Amount of distances skipped by the iteration due to the bound
+     * pruning.
+     */
+    public long getAvoidedDistanceCalls() {
+        return avoidedDistanceCalls;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.Dataset;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The k-means|| seeding which respects the side information. Each of the
+ * {@code rounds} samples every row independently with the probability
+ * {@code oversampling * k * D(x) / phi}, where {@code D(x)} is the distance
+ * of the row to the nearest candidate and {@code phi} is the sum of these
+ * distances. Sampling and distance updates are performed in parallel by the
+ * blocks of rows, each block has its own random generator, so the result does
+ * not depend on the parallelism. The candidates are weighted by the amount of
+ * rows closest to them and reduced to the {@code k} centroids by the weighted
+ * k-means++ seeding, which chooses the centroids of the labels among the
+ * candidates labeled with them (see {@link KMeansPlusPlusSeeding}).
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class KMeansParallelSeeding implements Seeding {
+    private int rounds = 5;             // Amount of the sampling rounds.
+    private double oversampling = 2;    // Expected amount of the sampled rows per round divided by k.
+
+    public KMeansParallelSeeding() {
+    }
+
+    /**
+     * @param rounds       Amount of the sampling rounds.
+     * @param oversampling Expected amount of the rows sampled by each round
+     *                     divided by the amount of clusters.
+     */
+    public KMeansParallelSeeding(int rounds, double oversampling) {
+        setRounds(rounds);
+        setOversampling(oversampling);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and setters
+    // ------------------------------------------------------------------------
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public void setRounds(int rounds) {
+        if (rounds < 0)
+            throw new IllegalArgumentException("Amount of rounds should be non-negative!");
+        this.rounds = rounds;
+    }
+
+    public double getOversampling() {
+        return oversampling;
+    }
+
+    public void setOversampling(double oversampling) {
+        if (!(oversampling > 0))
+            throw new IllegalArgumentException("Oversampling factor should be positive!");
+        this.oversampling = oversampling;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Business logic
+    // ------------------------------------------------------------------------
+
+    @Override
+    public double[][] initialize(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                                 Random random, ForkJoinPool pool) {
+        int size = data.size();
+        int[] rows = new int[size];
+        int[] starts = Seedings.groupByLabel(labels, k, rows);
+        double[] minDistances = new double[size];
+        Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+
+        // Sample the candidates.
+        int[] candidates = new int[]{random.nextInt(size)};
+        int count = 1;
+        Seedings.updateDistances(data, labels, k, measure, lambda,
+                new double[][]{centroidOf(data, labels, k, candidates[0])}, minDistances, pool);
+        for (int round = 0; round < rounds; ++round) {
+            double phi = 0;
+            for (double distance : minDistances)
+                phi += distance;
+            if (!(phi > 0))
+                break;
+            final double factor = oversampling * k / phi;
+            final long seed = random.nextLong();
+            List<int[]> sampled = Seedings.forEachBlock(size, pool, (from, to) -> {
+                Random blockRandom = new Random(seed ^ from * 0x9E3779B97F4A7C15L);
+                int[] result = new int[to - from];
+                int amount = 0;
+                for (int row = from; row < to; ++row)
+                    if (blockRandom.nextDouble() < factor * minDistances[row])
+                        result[amount++] = row;
+                return Arrays.copyOf(result, amount);
+            });
+            int added = 0;
+            for (int[] block : sampled)
+                added += block.length;
+            if (added == 0)
+                continue;
+            candidates = Arrays.copyOf(candidates, count + added);
+            double[][] centroids = new double[added][];
+            added = 0;
+            for (int[] block : sampled)
+                for (int row : block) {
+                    centroids[added++] = centroidOf(data, labels, k, row);
+                    candidates[count++] = row;
+                }
+            Seedings.updateDistances(data, labels, k, measure, lambda, centroids, minDistances, pool);
+        }
+        return reduce(data, labels, k, measure, lambda, random, pool, rows, starts,
+                Arrays.copyOf(candidates, count));
+    }
+
+    /**
+     * Chooses the centroids among the weighted candidates.
+     */
+    private double[][] reduce(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                              Random random, ForkJoinPool pool, int[] rows, int[] starts, int[] candidates) {
+        // Every label with the labeled rows gets at least one labeled candidate.
+        boolean[] covered = new boolean[k];
+        for (int row : candidates)
+            if (labels[row] >= 0)
+                covered[labels[row]] = true;
+        int count = candidates.length;
+        for (int label = 0; label < k; ++label)
+            if (!covered[label] && starts[label + 1] > starts[label]) {
+                candidates = Arrays.copyOf(candidates, count + 1);
+                candidates[count++] = rows[starts[label] + random.nextInt(starts[label + 1] - starts[label])];
+            }
+
+        // Weight the candidates by the amount of the closest rows.
+        double[][] centroids = new double[count][];
+        double[] sideNorms = new double[count];
+        for (int i = 0; i < count; ++i) {
+            centroids[i] = centroidOf(data, labels, k, candidates[i]);
+            sideNorms[i] = Seedings.sideNorm(centroids[i], data.getDimension());
+        }
+        final int amount = count;
+        int[] counts = Seedings.reduce(data.size(), pool, (from, to) -> {
+            int[] result = new int[amount];
+            double distance, minDistance;
+            int nearest;
+            for (int row = from; row < to; ++row) {
+                nearest = 0;
+                minDistance = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < amount; ++i) {
+                    distance = measure.distance(data, row, labels[row], centroids[i], sideNorms[i], k, lambda);
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        nearest = i;
+                    }
+                }
+                ++result[nearest];
+            }
+            return result;
+        }, (left, right) -> {
+            for (int i = 0; i < amount; ++i)
+                left[i] += right[i];
+            return left;
+        });
+        double[] weights = new double[count];
+        for (int i = 0; i < count; ++i)
+            weights[i] = counts[i];
+
+        // Weighted k-means++ among the candidates of each label.
+        int[] indices = new int[count];
+        int[] groups = Seedings.groupByLabel(candidateLabels(labels, candidates), k, indices);
+        double[] minDistances = new double[count];
+        double[] scores = new double[count];
+        Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+        double[][] result = new double[k][];
+        int seeded = 0, from, to, chosen;
+        for (int cluster : Seedings.clusterOrder(groups, k)) {
+            from = groups[cluster];
+            to = groups[cluster + 1];
+            if (from == to) {
+                // No labeled candidates, choose among the unlabeled ones or among all of them.
+                from = groups[k];
+                to = groups[k + 1];
+                if (from == to) {
+                    from = 0;
+                    to = groups[k];
+                }
+            }
+            for (int i = 0; i < count; ++i)
+                scores[i] = weights[i] * minDistances[i];
+            chosen = Seedings.sample(indices, from, to, seeded == 0 ? weights : scores, random);
+            result[cluster] = Seedings.centroidOf(data, labels, k, candidates[chosen], cluster);
+            if (++seeded < k)
+                for (int i = 0; i < count; ++i)
+                    minDistances[i] = Math.min(minDistances[i],
+                            measure.distance(centroids[i], result[cluster], k, lambda));
+        }
+        return result;
+    }
+
+    /**
+     * @return Centroid at the row with the one-hot label of the row.
+     */
+    private static double[] centroidOf(Dataset data, int[] labels, int k, int row) {
+        return Seedings.centroidOf(data, labels, k, row, labels[row]);
+    }
+
+    /**
+     * @return Label index of each candidate.
+     */
+    private static int[] candidateLabels(int[] labels, int[] candidates) {
+        int[] result = new int[candidates.length];
+        for (int i = 0; i < candidates.length; ++i)
+            result[i] = labels[candidates[i]];
+        return result;
+    }
+}
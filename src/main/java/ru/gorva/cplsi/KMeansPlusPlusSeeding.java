@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.Dataset;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The k-means++ seeding which respects the side information. Centroids of
+ * the labels with the labeled rows are chosen among these rows, centroids
+ * of the other labels are chosen among the rows without side information.
+ * Within its candidates a row is chosen with the probability proportional to
+ * its distance to the nearest chosen centroid, the first one is chosen
+ * uniformly.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class KMeansPlusPlusSeeding implements Seeding {
+    @Override
+    public double[][] initialize(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                                 Random random, ForkJoinPool pool) {
+        int size = data.size();
+        int[] rows = new int[size];
+        int[] starts = Seedings.groupByLabel(labels, k, rows);
+        double[] minDistances = new double[size];
+        Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+        double[][] result = new double[k][];
+
+        int seeded = 0, from, to;
+        for (int cluster : Seedings.clusterOrder(starts, k)) {
+            from = starts[cluster];
+            to = starts[cluster + 1];
+            if (from == to) {
+                // No labeled rows, choose among the unlabeled ones or among all the rows.
+                from = starts[k];
+                to = starts[k + 1];
+                if (from == to) {
+                    from = 0;
+                    to = starts[k];
+                }
+            }
+            result[cluster] = Seedings.centroidOf(data, labels, k,
+                    Seedings.sample(rows, from, to, minDistances, random), cluster);
+            if (++seeded < k)
+                Seedings.updateDistances(data, labels, k, measure, lambda, new double[][]{result[cluster]},
+                        minDistances, pool);
+        }
+        return result;
+    }
+}
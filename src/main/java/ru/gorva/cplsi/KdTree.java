@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.ArrayKernels;
+import ru.gorva.data.Dataset;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * KD-tree of the rows of a single label for the filtering algorithm of the
+ * k-means (Kanungo et al., <i>An Efficient k-Means Clustering Algorithm:
+ * Analysis and Implementation</i>, 2002) adapted to the CPLSI distance.
+ * <p>
+ * Each node keeps the bounding box, the sum and the amount of its rows. The
+ * assignment step passes the candidate centroids down the tree and drops
+ * those which are farther than another candidate from every point of the
+ * box, a node with the single candidate is assigned to it at once by its
+ * cached sum. For the low dimensions most of the rows are assigned by the
+ * nodes, so the distances are calculated for the rows near the borders of
+ * the clusters only.
+ * <p>
+ * All the rows of the tree share their label, so the side information part
+ * of the CPLSI distance is a constant of the centroid: it is added as the
+ * weight of the centroid and the filtering stays exact. Rows without side
+ * information form a tree with zero weights. The distance measure is
+ * required to be of the form of the {@link SquaredEuclideanDistance}.
+ * <p>
+ * The tree is immutable and could be shared by the concurrent clusterings.
+ * Nodes assigned at once by the previous iteration are tracked by the
+ * caller, see {@link FilterTask}.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+class KdTree {
+    static final int LEAF_SIZE = 16;            // Maximal amount of rows of a leaf.
+    static final int FORK_SIZE = 1 << 14;       // Minimal amount of rows of a node filtered in parallel.
+
+    private final Dataset data;
+    private final int label;                    // Label index of the rows, -1 for the rows without it.
+    private final int dimension;
+    private final int[] rows;                   // Rows of the data set ordered by the nodes.
+    private int size;                           // Amount of the nodes.
+    private int depth;                          // Maximal depth of a node, 0 for the root.
+
+    // Node values, the vectors of the node 'i' start at 'i * dimension'.
+    private int[] from;                         // First row of the node in 'rows', inclusive.
+    private int[] to;                           // Last row of the node in 'rows', exclusive.
+    private int[] left;                         // Left child, -1 for the leaves.
+    private int[] right;                        // Right child, -1 for the leaves.
+    private double[] lower;                     // Lower corner of the bounding box.
+    private double[] upper;                     // Upper corner of the bounding box.
+    private double[] sums;                      // Sum of the rows.
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param data  Data set.
+     * @param rows  Rows of the tree, reordered by the tree.
+     * @param label Label index of the rows, -1 for the rows without it.
+     */
+    KdTree(Dataset data, int[] rows, int label) {
+        if (rows.length == 0)
+            throw new IllegalArgumentException("Tree should contain at least one row!");
+        this.data = data;
+        this.label = label;
+        this.dimension = data.getDimension();
+        this.rows = rows;
+        int capacity = 4 * (rows.length / LEAF_SIZE + 1);
+        from = new int[capacity];
+        to = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        lower = new double[capacity * dimension];
+        upper = new double[capacity * dimension];
+        sums = new double[capacity * dimension];
+        build(0, rows.length, 0);
+    }
+
+    /**
+     * Builds trees of the rows of each label and of the rows without label.
+     *
+     * @param labels Label index for each row, -1 if there is no side
+     *               information.
+     * @return Tree of the rows without side information followed by the
+     * trees of the labels, {@code null} for the absent rows.
+     */
+    static KdTree[] build(Dataset data, int[] labels, int k) {
+        int[] counts = new int[k + 1];
+        for (int label : labels)
+            ++counts[label + 1];
+        int[][] rows = new int[k + 1][];
+        for (int i = 0; i <= k; ++i)
+            rows[i] = new int[counts[i]];
+        Arrays.fill(counts, 0);
+        for (int row = 0; row < labels.length; ++row)
+            rows[labels[row] + 1][counts[labels[row] + 1]++] = row;
+        KdTree[] result = new KdTree[k + 1];
+        for (int i = 0; i <= k; ++i)
+            if (rows[i].length > 0)
+                result[i] = new KdTree(data, rows[i], i - 1);
+        return result;
+    }
+
+    /**
+     * Creates the node of the rows {@code [from, to)} and its subtree split
+     * at the median of the widest side of the bounding box.
+     *
+     * @return Index of the node.
+     */
+    private int build(int from, int to, int depth) {
+        int node = size++;
+        ensureCapacity(size);
+        this.from[node] = from;
+        this.to[node] = to;
+        this.depth = Math.max(this.depth, depth);
+        int offset = node * dimension;
+        Arrays.fill(lower, offset, offset + dimension, Double.POSITIVE_INFINITY);
+        Arrays.fill(upper, offset, offset + dimension, Double.NEGATIVE_INFINITY);
+        double value;
+        for (int i = from; i < to; ++i) {
+            for (int j = 0; j < dimension; ++j) {
+                value = data.get(rows[i], j);
+                if (value < lower[offset + j])
+                    lower[offset + j] = value;
+                if (value > upper[offset + j])
+                    upper[offset + j] = value;
+            }
+        }
+        int split = -1;
+        double width = 0;
+        for (int j = 0; j < dimension; ++j)
+            if (upper[offset + j] - lower[offset + j] > width) {
+                width = upper[offset + j] - lower[offset + j];
+                split = j;
+            }
+        if (to - from <= LEAF_SIZE || split < 0) {
+            left[node] = right[node] = -1;
+            for (int i = from; i < to; ++i)
+                for (int j = 0; j < dimension; ++j)
+                    sums[offset + j] += data.get(rows[i], j);
+            return node;
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to, middle, split);
+        // Children are built before the assignment, as the arrays could grow.
+        int leftChild = build(from, middle, depth + 1);
+        int rightChild = build(middle, to, depth + 1);
+        left[node] = leftChild;
+        right[node] = rightChild;
+        ArrayKernels.add(sums, offset, sums, left[node] * dimension, dimension);
+        ArrayKernels.add(sums, offset, sums, right[node] * dimension, dimension);
+        return node;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= from.length)
+            return;
+        capacity = Math.max(capacity, from.length * 2);
+        from = Arrays.copyOf(from, capacity);
+        to = Arrays.copyOf(to, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        lower = Arrays.copyOf(lower, capacity * dimension);
+        upper = Arrays.copyOf(upper, capacity * dimension);
+        sums = Arrays.copyOf(sums, capacity * dimension);
+    }
+
+    /**
+     * Reorders the rows {@code [from, to)} so that the row at {@code nth}
+     * is the one of the sorted order by the {@code column}, the preceding
+     * rows are not greater and the following rows are not less than it.
+     */
+    private void select(int from, int to, int nth, int column) {
+        int lo = from, hi = to - 1, i, j, swap;
+        double pivot;
+        while (lo < hi) {
+            pivot = data.get(rows[(lo + hi) >>> 1], column);
+            i = lo;
+            j = hi;
+            while (i <= j) {
+                while (data.get(rows[i], column) < pivot)
+                    ++i;
+                while (data.get(rows[j], column) > pivot)
+                    --j;
+                if (i <= j) {
+                    swap = rows[i];
+                    rows[i++] = rows[j];
+                    rows[j--] = swap;
+                }
+            }
+            if (nth <= j)
+                hi = j;
+            else if (nth >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Amount of the nodes.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Label index of the rows, -1 for the rows without it.
+     */
+    int getLabel() {
+        return label;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Filtering
+    // ------------------------------------------------------------------------
+
+    /**
+     * Assignment step over the subtree of a node. Sums of the subtrees of at
+     * least {@link #FORK_SIZE} rows are calculated in parallel and merged in
+     * the order of the nodes, so the result does not depend on the
+     * parallelism.
+     * <p>
+     * Assignments of the rows are written only when they could change:
+     * {@code nodeClusters} keeps the cluster each node was assigned to at
+     * once by the previous iterations, -1 otherwise, so the rows of a node
+     * which keeps its cluster are skipped.
+     */
+    static class FilterTask extends RecursiveTask<AssignmentTask.PartialSums> {
+        private final KdTree tree;
+        private final double[][] centroids;
+        private final double[] weights;         // Side information part of the distance to each centroid.
+        private final int[] assignments;
+        private final int[] nodeClusters;
+        private final int node;
+        private final int[] candidates;         // Candidate clusters of the node in ascending order.
+        private final int count;                // Amount of the candidates.
+        private double[] point;                 // Buffer of a point of the bounding box.
+
+        /**
+         * @param tree         Tree of the rows.
+         * @param centroids    Centroids, the side information part of length
+         *                     {@code k} follows the features.
+         * @param sideNorms    Squared norms of the side information parts of
+         *                     the centroids.
+         * @param lambda       Trade-off parameter.
+         * @param assignments  Recipient of the cluster indices.
+         * @param nodeClusters Clusters of the nodes assigned at once, -1 for
+         *                     the other nodes, updated by the task.
+         */
+        FilterTask(KdTree tree, double[][] centroids, double[] sideNorms, double lambda,
+                   int[] assignments, int[] nodeClusters) {
+            this(tree, centroids, weights(tree, centroids, sideNorms, lambda), assignments, nodeClusters,
+                    0, candidates(centroids.length), centroids.length);
+        }
+
+        private FilterTask(KdTree tree, double[][] centroids, double[] weights, int[] assignments,
+                           int[] nodeClusters, int node, int[] candidates, int count) {
+            this.tree = tree;
+            this.centroids = centroids;
+            this.weights = weights;
+            this.assignments = assignments;
+            this.nodeClusters = nodeClusters;
+            this.node = node;
+            this.candidates = candidates;
+            this.count = count;
+        }
+
+        private static double[] weights(KdTree tree, double[][] centroids, double[] sideNorms, double lambda) {
+            double[] result = new double[centroids.length];
+            if (tree.label >= 0)
+                for (int i = 0; i < result.length; ++i)
+                    result[i] = lambda * Math.max(0, 1 - 2 * centroids[i][tree.dimension + tree.label]
+                            + sideNorms[i]);
+            return result;
+        }
+
+        private static int[] candidates(int k) {
+            int[] result = new int[k];
+            for (int i = 0; i < k; ++i)
+                result[i] = i;
+            return result;
+        }
+
+        @Override
+        protected AssignmentTask.PartialSums compute() {
+            int k = centroids.length;
+            AssignmentTask.PartialSums result = new AssignmentTask.PartialSums(k, tree.dimension + k);
+            int[] scratch = new int[(tree.depth + 2) * k];
+            point = new double[tree.dimension];
+            System.arraycopy(candidates, 0, scratch, 0, count);
+            filter(node, scratch, 0, count, result);
+            return result;
+        }
+
+        /**
+         * Filters the candidates of the node and assigns its rows.
+         *
+         * @param scratch Candidates of the nodes on the path from the root of
+         *                the task, {@code k} values per node.
+         * @param offset  Position of the candidates of the node.
+         * @param count   Amount of the candidates.
+         */
+        private void filter(int node, int[] scratch, int offset, int count, AssignmentTask.PartialSums result) {
+            int k = centroids.length;
+            int rows = tree.to[node] - tree.from[node];
+            // Candidate closest to the center of the box.
+            int dimension = tree.dimension, box = node * dimension;
+            for (int j = 0; j < dimension; ++j)
+                point[j] = 0.5 * (tree.lower[box + j] + tree.upper[box + j]);
+            int best = -1;
+            double distance, minDistance = Double.MAX_VALUE;
+            for (int i = offset; i < offset + count; ++i) {
+                distance = ArrayKernels.squaredDistance(point, 0, centroids[scratch[i]], 0, dimension)
+                        + weights[scratch[i]];
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    best = scratch[i];
+                }
+            }
+            // Keep the candidates which are closer than the best one at the
+            // corner of the box farthest in their direction.
+            int next = offset + k, kept = 0;
+            double[] bestCentroid = centroids[best];
+            for (int i = offset; i < offset + count; ++i) {
+                int candidate = scratch[i];
+                if (candidate != best) {
+                    double[] centroid = centroids[candidate];
+                    for (int j = 0; j < dimension; ++j)
+                        point[j] = centroid[j] > bestCentroid[j] ? tree.upper[box + j] : tree.lower[box + j];
+                    result.distanceCalls += 2;
+                    if (ArrayKernels.squaredDistance(point, 0, centroid, 0, dimension) + weights[candidate] >
+                            ArrayKernels.squaredDistance(point, 0, bestCentroid, 0, dimension) + weights[best])
+                        continue;
+                }
+                scratch[next + kept++] = candidate;
+            }
+            result.distanceCalls += count;
+            if (kept == 1) {
+                assignNode(node, best, result);
+                result.avoidedDistanceCalls += (long) rows * k;
+                return;
+            }
+            nodeClusters[node] = -1;
+            if (tree.left[node] < 0) {
+                assignRows(node, scratch, next, kept, result);
+                return;
+            }
+            if (rows >= FORK_SIZE) {
+                // Same split for the sequential execution, so the order of the additions is kept.
+                int[] survivors = Arrays.copyOfRange(scratch, next, next + kept);
+                FilterTask leftTask = new FilterTask(tree, centroids, weights, assignments, nodeClusters,
+                        tree.left[node], survivors, kept);
+                FilterTask rightTask = new FilterTask(tree, centroids, weights, assignments, nodeClusters,
+                        tree.right[node], survivors, kept);
+                AssignmentTask.PartialSums leftSums, rightSums;
+                if (inForkJoinPool()) {
+                    leftTask.fork();
+                    rightSums = rightTask.compute();
+                    leftSums = leftTask.join();
+                } else {
+                    leftSums = leftTask.compute();
+                    rightSums = rightTask.compute();
+                }
+                result.merge(leftSums.merge(rightSums));
+                return;
+            }
+            filter(tree.left[node], scratch, next, kept, result);
+            filter(tree.right[node], scratch, next, kept, result);
+        }
+
+        /**
+         * Assigns the rows of the leaf to the nearest candidates.
+         */
+        private void assignRows(int node, int[] scratch, int offset, int count, AssignmentTask.PartialSums result) {
+            int dimension = tree.dimension;
+            int row, cluster, prevCluster;
+            double distance, minDistance;
+            for (int i = tree.from[node]; i < tree.to[node]; ++i) {
+                row = tree.rows[i];
+                cluster = -1;
+                minDistance = Double.MAX_VALUE;
+                for (int j = offset; j < offset + count; ++j) {
+                    distance = tree.data.squaredDistance(row, centroids[scratch[j]]) + weights[scratch[j]];
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        cluster = scratch[j];
+                    }
+                }
+                prevCluster = assignments[row];
+                if (prevCluster != cluster) {
+                    assignments[row] = cluster;
+                    ++result.reassigned;
+                }
+                ++result.counts[cluster];
+                tree.data.accumulate(row, result.sums[cluster], 1);
+                if (tree.label >= 0)
+                    result.sums[cluster][dimension + tree.label] += 1;
+            }
+            int rows = tree.to[node] - tree.from[node];
+            result.distanceCalls += (long) rows * count;
+            result.avoidedDistanceCalls += (long) rows * (centroids.length - count);
+        }
+
+        /**
+         * Assigns all the rows of the node to the cluster by the sum of the
+         * node.
+         */
+        private void assignNode(int node, int cluster, AssignmentTask.PartialSums result) {
+            int dimension = tree.dimension;
+            int rows = tree.to[node] - tree.from[node];
+            result.counts[cluster] += rows;
+            ArrayKernels.add(result.sums[cluster], 0, tree.sums, node * dimension, dimension);
+            if (tree.label >= 0)
+                result.sums[cluster][dimension + tree.label] += rows;
+            if (nodeClusters[node] == cluster)
+                return;
+            for (int i = tree.from[node]; i < tree.to[node]; ++i) {
+                if (assignments[tree.rows[i]] != cluster) {
+                    assignments[tree.rows[i]] = cluster;
+                    ++result.reassigned;
+                }
+            }
+            clearSubtree(node);
+            nodeClusters[node] = cluster;
+        }
+
+        /**
+         * Resets the clusters of the node and its descendants.
+         */
+        private void clearSubtree(int node) {
+            nodeClusters[node] = -1;
+            if (tree.left[node] >= 0) {
+                clearSubtree(tree.left[node]);
+                clearSubtree(tree.right[node]);
+            }
+        }
+    }
+}
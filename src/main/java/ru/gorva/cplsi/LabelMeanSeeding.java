@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.ArrayKernels;
+import ru.gorva.data.Dataset;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Seeding with the means of the labeled rows. Each label is seeded with the
+ * mean of its labeled rows, side information part of which is the one-hot
+ * label. The means are accumulated in a single pass over the data set by the
+ * blocks of rows, block sums are merged by a tree of the fixed shape, so the
+ * result does not depend on the parallelism and only the sums of the
+ * unfinished halves of the data set are kept at once. Labels without labeled rows are seeded as
+ * the {@link KMeansPlusPlusSeeding} does, with the rows without side
+ * information chosen with the probability proportional to their distance to
+ * the nearest seeded centroid.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class LabelMeanSeeding implements Seeding {
+    @Override
+    public double[][] initialize(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                                 Random random, ForkJoinPool pool) {
+        int dimension = data.getDimension();
+        double[][] result = new double[k][];
+        Sums totals = Seedings.reduce(data.size(), pool, (from, to) -> accumulate(data, labels, k, from, to),
+                Sums::merge);
+        int[] counts = totals.counts;
+        double[][] sums = totals.sums;
+
+        int seeded = 0;
+        for (int cluster = 0; cluster < k; ++cluster)
+            if (counts[cluster] > 0) {
+                result[cluster] = new double[dimension + k];
+                for (int j = 0; j < dimension; ++j)
+                    result[cluster][j] = sums[cluster][j] / counts[cluster];
+                result[cluster][dimension + cluster] = 1;
+                ++seeded;
+            }
+        if (seeded == k)
+            return result;
+
+        // Seed the labels without labeled rows with the distant rows.
+        int size = data.size();
+        int[] rows = new int[size];
+        int[] starts = Seedings.groupByLabel(labels, k, rows);
+        double[] minDistances = new double[size];
+        Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+        double[][] seeds = new double[seeded][];
+        for (int cluster = 0, i = 0; cluster < k; ++cluster)
+            if (result[cluster] != null)
+                seeds[i++] = result[cluster];
+        Seedings.updateDistances(data, labels, k, measure, lambda, seeds, minDistances, pool);
+        int from = starts[k], to = starts[k + 1];
+        if (from == to) {
+            from = 0;
+            to = starts[k];
+        }
+        for (int cluster = 0; cluster < k; ++cluster)
+            if (result[cluster] == null) {
+                result[cluster] = Seedings.centroidOf(data, labels, k,
+                        Seedings.sample(rows, from, to, minDistances, random), cluster);
+                if (++seeded < k)
+                    Seedings.updateDistances(data, labels, k, measure, lambda, new double[][]{result[cluster]},
+                            minDistances, pool);
+            }
+        return result;
+    }
+
+    /**
+     * @return Sums of the labeled rows of the {@code [from, to)} range.
+     */
+    private static Sums accumulate(Dataset data, int[] labels, int k, int from, int to) {
+        Sums result = new Sums(k, data.getDimension());
+        for (int row = from; row < to; ++row)
+            if (labels[row] >= 0) {
+                data.accumulate(row, result.sums[labels[row]], 1);
+                ++result.counts[labels[row]];
+            }
+        return result;
+    }
+
+    /**
+     * Sums and amounts of the labeled rows per label.
+     */
+    private static class Sums {
+        final double[][] sums;
+        final int[] counts;
+
+        Sums(int k, int dimension) {
+            sums = new double[k][dimension];
+            counts = new int[k];
+        }
+
+        /**
+         * Adds the sums of the following rows to these ones.
+         *
+         * @return {@code this}.
+         */
+        Sums merge(Sums other) {
+            for (int i = 0; i < sums.length; ++i)
+                if (other.counts[i] > 0) {
+                    counts[i] += other.counts[i];
+                    ArrayKernels.add(sums[i], 0, other.sums[i], 0, sums[i].length);
+                }
+            return this;
+        }
+    }
+}
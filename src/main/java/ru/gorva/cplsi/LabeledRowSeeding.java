@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.Dataset;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Deterministic seeding with the rows of the data set. Each label is seeded
+ * with its last labeled row met before all the labels are found, labels
+ * without labeled rows are seeded with the first rows without side
+ * information.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class LabeledRowSeeding implements Seeding {
+    @Override
+    public double[][] initialize(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                                 Random random, ForkJoinPool pool) {
+        double[][] result = new double[k][];
+        int[] rows = new int[k];
+        int initialized = 0;
+        int index = 0;
+        Arrays.fill(rows, -1);
+        // Select value from the distinct clusters.
+        while (initialized < k && index < data.size()) {
+            if (labels[index] >= 0) {
+                if (rows[labels[index]] < 0)
+                    ++initialized;
+                rows[labels[index]] = index;
+            }
+            ++index;
+        }
+        // Initialize uninitialized clusters with the items without side information.
+        int i = 0;
+        for (int cluster = 0; cluster < k; ++cluster) {
+            if (rows[cluster] < 0) {
+                while (labels[i] >= 0)
+                    ++i;
+                rows[cluster] = i++;
+            }
+            result[cluster] = Seedings.centroidOf(data, labels, k, rows[cluster], cluster);
+        }
+        return result;
+    }
+}
@@ -35,6 +35,33 @@ public class Nmi {
     private List<BaseType> distinctLabels;
     private Cluster[] clusters1;
     private Cluster[] clusters2;
+    private ContingencyTable table;
+
+    /**
+     * Measure over the cluster indices of the rows. Clusters with the same
+     * index are considered as clusters with the same label.
+     *
+     * @param assignments1 Cluster index for each row, from 0 to {@code k - 1}.
+     * @param assignments2 Cluster index for each row, from 0 to {@code k - 1}.
+     * @param k            Number of clusters.
+     */
+    public Nmi(int[] assignments1, int[] assignments2, int k) {
+        this(new ContingencyTable(assignments1, assignments2, k));
+    }
+
+    /**
+     * Measure over the contingency table of the square partitions.
+     *
+     * @param table Contingency table with the same amount of classes and
+     *              clusters.
+     */
+    public Nmi(ContingencyTable table) {
+        if (table.getClasses() != table.getClusters())
+            throw new IllegalArgumentException("Amounts of classes and clusters should be equal!");
+        this.k = table.getClasses();
+        this.size = table.size();
+        this.table = table;
+    }
 
     public Nmi(Cluster[] clusters1, Cluster[] clusters2, Set<BaseType> distinctLabels, int totalSize) {
         this.k = clusters1.length;
@@ -48,6 +75,14 @@ public class Nmi {
         return result;
     }
 
+    /**
+     * @return Contingency table of the partitions, {@code null} if the
+     * measure is calculated over the clusters.
+     */
+    public ContingencyTable getTable() {
+        return table;
+    }
+
     private double calculateEntropy(Cluster[] clusters) {
         double entropy = 0;
         double p;
@@ -58,18 +93,51 @@ public class Nmi {
         return entropy;
     }
 
+    /**
+     * @return Entropy of the amounts of items in the clusters of
+     * {@code clusters1} which are missing in the clusters of {@code clusters2}
+     * with the same labels.
+     */
     private double calculateEntropy(Cluster[] clusters1, Cluster[] clusters2) {
+        Map<BaseType, Cluster> byLabel = new HashMap<>();
+        for (Cluster cluster : clusters2)
+            byLabel.putIfAbsent(cluster.getLabel(), cluster);
+        int[] counts = new int[clusters1.length];
+        Cluster cluster2;
+        Set<DataItem> values2;
+        for (int i = 0; i < clusters1.length; ++i) {
+            cluster2 = byLabel.get(clusters1[i].getLabel());
+            values2 = cluster2 == null ? Collections.<DataItem>emptySet() : new HashSet<>(cluster2.getValues());
+            for (DataItem item : clusters1[i])
+                if (!values2.contains(item))
+                    ++counts[i];
+        }
+        return calculateEntropy(counts);
+    }
+
+    /**
+     * Same measure as {@link #calculateEntropy(Cluster[], Cluster[])}
+     * calculated from the contingency table. Rows are compared by their
+     * indices, not by their values.
+     *
+     * @return Entropy of the amounts of rows in the classes which are missing
+     * in the clusters with the same index.
+     */
+    private double calculateMismatchEntropy(ContingencyTable table) {
+        int[] counts = new int[k];
+        for (int i = 0; i < k; ++i)
+            counts[i] = table.getClassSize(i) - table.get(i, i);
+        return calculateEntropy(counts);
+    }
+
+    /**
+     * @return Entropy of the given amounts of rows.
+     */
+    private double calculateEntropy(int[] counts) {
         double entropy = 0;
         double p;
-        List<DataItem> list;
-        Cluster cluster2 = null;
-        for (int i = 0; i < clusters1.length; ++i) {
-            list = new ArrayList(clusters1[i].getValues());
-            for (Cluster c: clusters2)
-                if (c.getLabel().equals(clusters1[i].getLabel()))
-                    cluster2 = c;
-            list.removeAll(cluster2.getValues());
-            p = list.size() / size;
+        for (int count : counts) {
+            p = count / size;
             if (p != 0)
                 entropy -= p * Math.log(p);
         }
@@ -77,6 +145,13 @@ public class Nmi {
     }
 
     public double calculateNmi() {
+        if (table != null) {
+            double h1 = table.classEntropy();
+            double h2 = table.clusterEntropy();
+            double h3 = calculateMismatchEntropy(table);
+            result = (h1 - h3) / Math.sqrt(h1 * h2);
+            return result;
+        }
         double h1 = calculateEntropy(clusters1);
         double h2 = calculateEntropy(clusters2);
         double h3 = calculateEntropy(clusters1, clusters2);
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.Dataset;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Strategy of the initial centroids of the CPLSI algorithm. Centroid index
+ * should be equal to the label index, so the centroids of the labels with the
+ * labeled rows are expected to be seeded from these rows.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public interface Seeding {
+    /**
+     * @param data    Data set without side information.
+     * @param labels  Label index for each row, -1 if the row has no side
+     *                information.
+     * @param k       Number of clusters.
+     * @param measure Distance measure of the clustering.
+     * @param lambda  Trade-off parameter.
+     * @param random  Source of the randomness.
+     * @param pool    Pool for the parallel execution, {@code null} for the
+     *                sequential one.
+     * @return Centroids with side information part, centroid index equals to
+     * label index.
+     */
+    double[][] initialize(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                          Random random, ForkJoinPool pool);
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.Dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Helpers shared by the {@link Seeding} strategies.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+final class Seedings {
+    static final int BLOCK_SIZE = AssignmentTask.BLOCK_SIZE;
+
+    private Seedings() {
+    }
+
+    /**
+     * @return Centroid of the cluster at the row, side information part is the
+     * one-hot label of the row if the row is labeled with the cluster, zero
+     * otherwise.
+     */
+    static double[] centroidOf(Dataset data, int[] labels, int k, int row, int cluster) {
+        double[] result = new double[data.getDimension() + k];
+        data.copyRow(row, result, 0);
+        if (labels[row] == cluster)
+            result[data.getDimension() + cluster] = 1;
+        return result;
+    }
+
+    /**
+     * Groups the rows by their labels.
+     *
+     * @return Array of {@code k + 2} offsets into the {@code rows}: rows of
+     * the label {@code i} are located in {@code [starts[i], starts[i + 1])},
+     * rows without side information follow them up to {@code starts[k + 1]}.
+     */
+    static int[] groupByLabel(int[] labels, int k, int[] rows) {
+        int[] starts = new int[k + 2];
+        for (int label : labels)
+            ++starts[(label >= 0 ? label : k) + 1];
+        for (int i = 1; i < starts.length; ++i)
+            starts[i] += starts[i - 1];
+        int[] positions = Arrays.copyOf(starts, k + 1);
+        for (int row = 0; row < labels.length; ++row)
+            rows[positions[labels[row] >= 0 ? labels[row] : k]++] = row;
+        return starts;
+    }
+
+    /**
+     * @return Clusters of the labels with the labeled rows first, then the
+     * other ones, both in the order of the indices.
+     */
+    static int[] clusterOrder(int[] starts, int k) {
+        int[] result = new int[k];
+        int index = 0;
+        for (int cluster = 0; cluster < k; ++cluster)
+            if (starts[cluster + 1] > starts[cluster])
+                result[index++] = cluster;
+        for (int cluster = 0; cluster < k; ++cluster)
+            if (starts[cluster + 1] == starts[cluster])
+                result[index++] = cluster;
+        return result;
+    }
+
+    /**
+     * @return Squared norm of the side information part of the centroid.
+     */
+    static double sideNorm(double[] centroid, int dimension) {
+        double result = 0;
+        for (int i = dimension; i < centroid.length; ++i)
+            result += centroid[i] * centroid[i];
+        return result;
+    }
+
+    /**
+     * Lowers the distances of the rows to the nearest centroids by the
+     * distances to the given centroids.
+     *
+     * @param minDistances Distances of the rows to the nearest centroids.
+     */
+    static void updateDistances(Dataset data, int[] labels, int k, DistanceMeasure measure, double lambda,
+                                double[][] centroids, double[] minDistances, ForkJoinPool pool) {
+        double[] sideNorms = new double[centroids.length];
+        for (int i = 0; i < centroids.length; ++i)
+            sideNorms[i] = sideNorm(centroids[i], data.getDimension());
+        forEachBlock(data.size(), pool, (from, to) -> {
+            double distance;
+            for (int row = from; row < to; ++row)
+                for (int i = 0; i < centroids.length; ++i) {
+                    distance = measure.distance(data, row, labels[row], centroids[i], sideNorms[i], k, lambda);
+                    if (distance < minDistances[row])
+                        minDistances[row] = distance;
+                }
+            return null;
+        });
+    }
+
+    /**
+     * Samples an index with the probability proportional to its weight among
+     * the candidates, uniformly if the weights are all zero or infinite.
+     *
+     * @param candidates Indices to choose from, {@code [from, to)} range.
+     * @param weights    Weights of all the indices.
+     * @return Chosen index, -1 if there are no candidates.
+     */
+    static int sample(int[] candidates, int from, int to, double[] weights, Random random) {
+        if (from >= to)
+            return -1;
+        double total = 0;
+        for (int i = from; i < to; ++i)
+            total += weights[candidates[i]];
+        if (!(total > 0) || Double.isInfinite(total))
+            return candidates[from + random.nextInt(to - from)];
+        double threshold = random.nextDouble() * total;
+        for (int i = from; i < to; ++i) {
+            threshold -= weights[candidates[i]];
+            if (threshold < 0)
+                return candidates[i];
+        }
+        return candidates[to - 1];
+    }
+
+    /**
+     * Range of the rows processed by a single task.
+     */
+    interface Block<T> {
+        T apply(int from, int to);
+    }
+
+    /**
+     * Applies the function to the consecutive blocks of {@link #BLOCK_SIZE}
+     * rows in parallel if the pool is provided.
+     *
+     * @return Results of the blocks in their order.
+     */
+    static <T> List<T> forEachBlock(int size, ForkJoinPool pool, Block<T> block) {
+        List<T> result = new ArrayList<>();
+        if (pool == null) {
+            for (int from = 0; from < size; from += BLOCK_SIZE)
+                result.add(block.apply(from, Math.min(from + BLOCK_SIZE, size)));
+            return result;
+        }
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (int from = 0; from < size; from += BLOCK_SIZE) {
+            final int start = from;
+            tasks.add(() -> block.apply(start, Math.min(start + BLOCK_SIZE, size)));
+        }
+        try {
+            for (Future<T> future : pool.invokeAll(tasks))
+                result.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Seeding is interrupted!", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Applies the function to the blocks of at most {@link #BLOCK_SIZE} rows
+     * in parallel if the pool is provided and merges their results. The range
+     * is split in halves as by the {@link AssignmentTask}, so the order of the
+     * merges depends only on the amount of rows, and only the results of the
+     * unfinished halves are kept at once.
+     *
+     * @param merge Merges the result of the right half into the result of
+     *              the left one.
+     * @return Merged result of all the rows.
+     */
+    static <T> T reduce(int size, ForkJoinPool pool, Block<T> block, BinaryOperator<T> merge) {
+        ReduceTask<T> task = new ReduceTask<>(block, merge, 0, size);
+        return pool == null ? task.compute() : pool.invoke(task);
+    }
+
+    /**
+     * Task of the {@link #reduce} over the {@code [from, to)} range.
+     */
+    private static class ReduceTask<T> extends RecursiveTask<T> {
+        private final Block<T> block;
+        private final BinaryOperator<T> merge;
+        private final int from;
+        private final int to;
+
+        ReduceTask(Block<T> block, BinaryOperator<T> merge, int from, int to) {
+            this.block = block;
+            this.merge = merge;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= BLOCK_SIZE)
+                return block.apply(from, to);
+            int middle = (from + to) >>> 1;
+            ReduceTask<T> left = new ReduceTask<>(block, merge, from, middle);
+            ReduceTask<T> right = new ReduceTask<>(block, merge, middle, to);
+            left.fork();
+            T rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+}
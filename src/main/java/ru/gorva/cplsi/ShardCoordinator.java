@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.BaseType;
+import ru.gorva.data.LabelDictionary;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Coordinator of the sharded clustering. The data set is split between the
+ * {@link ShardWorker} processes: each iteration the coordinator broadcasts
+ * the centroids, the workers assign the rows of their shards and reply with
+ * the sums of the clusters, and the coordinator reduces the sums into the
+ * new centroids. Iterations stop by the convergence criterion of the
+ * {@link Cplsi}, i.e. when no centroid moves farther than its tolerance.
+ * <p>
+ * Sums of the workers are reduced in the order of the workers, so the
+ * result does not depend on the timing of the replies. Clusters are seeded
+ * by the means of the labeled rows of their labels, as with the
+ * {@link LabelMeanSeeding}; clusters without labeled rows are seeded by the
+ * first rows of the shards. Cluster index is the index of the label in the
+ * {@link #getLabelDictionary()}, which orders the labels by their first row
+ * in the file, as the {@link DataReader} does, so the cluster indices are
+ * the same as of the {@link Cplsi} on the whole file.
+ * <p>
+ * A failure of any worker in the middle of an exchange leaves unread replies
+ * in the connections, so all the sessions are abandoned and the coordinator
+ * could only be closed.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class ShardCoordinator implements Closeable {
+    private final List<Connection> connections = new ArrayList<>();
+    private final LabelDictionary dictionary = new LabelDictionary();
+    private final DistanceMeasure measure = new VectorizedSquaredEuclideanDistance();
+    private final List<IterationListener> listeners = new ArrayList<>();
+    private final int size;
+    private final int dimension;
+    private final double squaredNormSum;
+
+    private double[][] centroids;   // Centroids of the clusters, cluster index equals to label index.
+    private double objective = Double.POSITIVE_INFINITY;
+    private int iterations;
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Connects to the workers and joins their labels in the order of their
+     * first rows.
+     *
+     * @param workers Addresses of the workers.
+     * @throws IOException in case of connection errors or if the workers
+     *                     have different dimensions.
+     */
+    public ShardCoordinator(List<InetSocketAddress> workers) throws IOException {
+        if (workers.isEmpty())
+            throw new IllegalArgumentException("At least one worker should be provided!");
+        int size = 0, dimension = -1;
+        double squaredNormSum = 0;
+        Map<BaseType, Long> firstRows = new LinkedHashMap<>();
+        try {
+            for (InetSocketAddress address : workers) {
+                Connection connection = new Connection(address);
+                connections.add(connection);
+                if (dimension >= 0 && connection.dimension != dimension)
+                    throw new IOException("Worker " + address + " has " + connection.dimension +
+                            " features instead of " + dimension + "!");
+                dimension = connection.dimension;
+                size += connection.size;
+                squaredNormSum += connection.squaredNormSum;
+                for (int i = 0; i < connection.labels.length; ++i)
+                    firstRows.merge(connection.labels[i], connection.firstRows[i], Math::min);
+            }
+            // Index the labels by their first rows, the labels without rows go last.
+            List<Map.Entry<BaseType, Long>> labels = new ArrayList<>(firstRows.entrySet());
+            labels.sort(Map.Entry.comparingByValue());
+            for (Map.Entry<BaseType, Long> label : labels)
+                dictionary.add(label.getKey());
+            for (Connection connection : connections) {
+                int[] mapping = new int[connection.labels.length];
+                for (int i = 0; i < mapping.length; ++i)
+                    mapping[i] = dictionary.indexOf(connection.labels[i]);
+                ShardWorker.writeInts(connection.out, mapping);
+                connection.out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        this.size = size;
+        this.dimension = dimension;
+        this.squaredNormSum = squaredNormSum;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    public void addIterationListener(IterationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeIterationListener(IterationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return Amount of the rows of all the shards.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return Labels of the clusters indexed by the cluster indices.
+     */
+    public LabelDictionary getLabelDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return Label of the cluster with the given index.
+     */
+    public BaseType getClusterLabel(int cluster) {
+        return cluster < dictionary.size() ? dictionary.get(cluster) : null;
+    }
+
+    /**
+     * @return Centroids of the clusters without side information part.
+     */
+    public double[][] getCentroids() {
+        double[][] result = new double[centroids.length][];
+        for (int i = 0; i < centroids.length; ++i)
+            result[i] = Arrays.copyOf(centroids[i], dimension);
+        return result;
+    }
+
+    /**
+     * @return Objective of the last clustering.
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return Amount of iterations of the last clustering.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Business logic
+    // ------------------------------------------------------------------------
+
+    /**
+     * Cluster the rows of the workers into as many clusters as there are
+     * labels.
+     *
+     * @param lambda        Trade-off parameter.
+     * @param maxIterations Maximal amount of the iterations.
+     * @throws IOException in case of connection errors or failures of the
+     *                     workers.
+     */
+    public void cluster(double lambda, int maxIterations) throws IOException {
+        cluster(lambda, maxIterations, dictionary.size());
+    }
+
+    /**
+     * @param lambda        Trade-off parameter.
+     * @param maxIterations Maximal amount of the iterations.
+     * @param k             Amount of clusters, not less than the amount of
+     *                      labels.
+     * @throws IOException in case of connection errors or failures of the
+     *                     workers.
+     */
+    public void cluster(double lambda, int maxIterations, int k) throws IOException {
+        if (k < dictionary.size())
+            throw new IllegalArgumentException("Number of clusters should not be less than number of labels!");
+        long time = System.nanoTime();
+        centroids = seed(k);
+        long seedingTime = System.nanoTime() - time, assignmentTime;
+        double[][] prevCentroids, spareCentroids = new double[k][dimension + k];
+        double distance, maxDistance;
+        int reassigned;
+        long distanceCalls;
+        iterations = 0;
+        do {
+            prevCentroids = centroids;
+            // Broadcast the centroids, the workers assign their shards concurrently.
+            time = System.nanoTime();
+            AssignmentTask.PartialSums totals = null, sums;
+            reassigned = 0;
+            distanceCalls = 0;
+            try {
+                for (Connection connection : connections) {
+                    connection.out.writeInt(ShardWorker.Commands.STEP);
+                    connection.out.writeDouble(lambda);
+                    connection.out.writeInt(k);
+                    for (double[] centroid : centroids)
+                        ShardWorker.writeDoubles(connection.out, centroid);
+                    connection.out.flush();
+                }
+                for (Connection connection : connections) {
+                    connection.readStatus();
+                    reassigned += connection.in.readInt();
+                    distanceCalls += connection.in.readLong();
+                    sums = ShardWorker.readSums(connection.in, k, dimension + k);
+                    totals = totals == null ? sums : totals.merge(sums);
+                }
+            } catch (IOException | RuntimeException e) {
+                abandon();
+                throw e;
+            }
+            assignmentTime = System.nanoTime() - time;
+            time = System.nanoTime();
+            centroids = Cplsi.updateCentroids(totals, prevCentroids, spareCentroids);
+            objective = Cplsi.calculateObjective(totals, centroids, squaredNormSum, dimension, lambda);
+            ++iterations;
+            maxDistance = Double.MIN_VALUE;
+            for (int i = 0; i < k; ++i) {
+                distance = measure.distance(centroids[i], prevCentroids[i], k, lambda);
+                if (distance > maxDistance)
+                    maxDistance = distance;
+            }
+            spareCentroids = prevCentroids;
+            notifyListeners(reassigned, maxDistance, iterations == 1 ? seedingTime : 0, assignmentTime,
+                    System.nanoTime() - time, distanceCalls);
+        } while (maxDistance > Cplsi.TOLERANCE && iterations < maxIterations);
+    }
+
+    /**
+     * Seeds the labels by the means of their labeled rows and the other
+     * clusters by the first rows of the shards.
+     */
+    private double[][] seed(int k) throws IOException {
+        AssignmentTask.PartialSums totals = null, sums;
+        List<double[]> rows = new ArrayList<>();
+        try {
+            for (Connection connection : connections) {
+                connection.out.writeInt(ShardWorker.Commands.SEED);
+                connection.out.writeInt(k);
+                connection.out.flush();
+            }
+            for (Connection connection : connections) {
+                connection.readStatus();
+                sums = ShardWorker.readSums(connection.in, k, dimension + k);
+                totals = totals == null ? sums : totals.merge(sums);
+                for (int i = connection.in.readInt(); i > 0; --i)
+                    rows.add(ShardWorker.readDoubles(connection.in, dimension));
+            }
+        } catch (IOException | RuntimeException e) {
+            abandon();
+            throw e;
+        }
+        double[][] result = new double[k][dimension + k];
+        int next = 0;
+        for (int cluster = 0; cluster < k; ++cluster) {
+            if (totals.counts[cluster] > 0) {
+                for (int j = 0; j < dimension + k; ++j)
+                    result[cluster][j] = totals.sums[cluster][j] / totals.counts[cluster];
+            } else {
+                if (next == rows.size())
+                    throw new IllegalStateException("Amount of rows is less than amount of clusters!");
+                System.arraycopy(rows.get(next++), 0, result[cluster], 0, dimension);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the finished iteration to the listeners.
+     */
+    private void notifyListeners(int reassigned, double maxShift, long seedingTime, long assignmentTime,
+                                 long updateTime, long distanceCalls) {
+        if (listeners.isEmpty())
+            return;
+        IterationStatistics statistics = new IterationStatistics(-1, iterations, objective, reassigned,
+                maxShift, seedingTime, assignmentTime, updateTime, distanceCalls, 0);
+        for (IterationListener listener : listeners)
+            listener.iterationFinished(statistics);
+    }
+
+    /**
+     * Collects the cluster indices of the rows from the workers. Row
+     * {@code i} of the shard {@code s} of {@code n} is the row
+     * {@code i * n + s} of the data set.
+     *
+     * @return Cluster index of each row of the data set, -1 for the rows of
+     * the missing shards.
+     * @throws IOException in case of connection errors or failures of the
+     *                     workers.
+     */
+    public int[] getAssignments() throws IOException {
+        int[] result = new int[size];
+        Arrays.fill(result, -1);
+        List<int[]> replies = new ArrayList<>();
+        try {
+            for (Connection connection : connections) {
+                connection.out.writeInt(ShardWorker.Commands.ASSIGNMENTS);
+                connection.out.flush();
+            }
+            for (Connection connection : connections) {
+                connection.readStatus();
+                replies.add(ShardWorker.readInts(connection.in));
+            }
+        } catch (IOException | RuntimeException e) {
+            abandon();
+            throw e;
+        }
+        for (int j = 0; j < connections.size(); ++j) {
+            Connection connection = connections.get(j);
+            int[] assignments = replies.get(j);
+            for (int i = 0; i < assignments.length; ++i) {
+                long row = (long) i * connection.shards + connection.shard;
+                if (row >= size)
+                    throw new IOException("Shards of the workers do not form a data set!");
+                result[(int) row] = assignments[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Closes the connections without the {@link ShardWorker.Commands#CLOSE}
+     * handshake, since their replies could not be trusted anymore.
+     */
+    private void abandon() {
+        for (Connection connection : connections) {
+            connection.open = false;
+            try {
+                connection.socket.close();
+            } catch (IOException e) {
+                // The session is lost anyway.
+            }
+        }
+    }
+
+    /**
+     * Ends the sessions of the workers and closes the connections.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        connections.clear();
+        if (exception != null)
+            throw exception;
+    }
+
+    /**
+     * Usage: {@code ShardCoordinator <lambda> <max iterations> <worker port>...}
+     * <p>
+     * Workers are expected on the loopback interface.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ShardCoordinator <lambda> <max iterations> <worker port>...");
+            System.exit(1);
+        }
+        List<InetSocketAddress> workers = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i)
+            workers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[i])));
+        try (ShardCoordinator coordinator = new ShardCoordinator(workers)) {
+            long time = System.nanoTime();
+            coordinator.cluster(Double.parseDouble(args[0]), Integer.parseInt(args[1]));
+            time = System.nanoTime() - time;
+            int[] counts = new int[coordinator.getLabelDictionary().size()];
+            for (int cluster : coordinator.getAssignments())
+                if (cluster >= 0)
+                    ++counts[cluster];
+            System.out.println(String.format("%d rows of %d workers, %d iterations in %d ms, objective %.7f",
+                    coordinator.size(), workers.size(), coordinator.getIterations(), time / 1_000_000,
+                    coordinator.getObjective()));
+            for (int i = 0; i < counts.length; ++i)
+                System.out.println(String.format("%24s | %9d", coordinator.getClusterLabel(i), counts[i]));
+        }
+    }
+
+    /**
+     * Connection to a worker with its description.
+     */
+    private static class Connection implements Closeable {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final int shard;
+        final int shards;
+        final int size;
+        final int dimension;
+        final double squaredNormSum;
+        final BaseType[] labels;
+        final long[] firstRows;     // Label index of the worker -> index of its first row in the file
+        boolean open = true;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(address);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                shard = in.readInt();
+                shards = in.readInt();
+                size = in.readInt();
+                dimension = in.readInt();
+                squaredNormSum = in.readDouble();
+                labels = new BaseType[in.readInt()];
+                for (int i = 0; i < labels.length; ++i) {
+                    int type = in.readInt();
+                    labels[i] = BaseType.createDataValue(in.readUTF(), type);
+                }
+                firstRows = new long[labels.length];
+                for (int i = 0; i < labels.length; ++i)
+                    firstRows[i] = in.readLong();
+            } catch (IOException | RuntimeException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads the status of the reply.
+         *
+         * @throws IOException if the worker failed to perform the command.
+         */
+        void readStatus() throws IOException {
+            if (in.readInt() != ShardWorker.Statuses.OK)
+                throw new IOException("Worker " + socket.getRemoteSocketAddress() + " failed: " + in.readUTF() + "!");
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (open && !socket.isClosed()) {
+                    out.writeInt(ShardWorker.Commands.CLOSE);
+                    out.flush();
+                    readStatus();
+                }
+            } finally {
+                open = false;
+                socket.close();
+            }
+        }
+    }
+}
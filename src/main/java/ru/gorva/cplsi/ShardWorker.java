@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.LabelDictionary;
+import ru.gorva.data.LabelVector;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Worker of the sharded clustering. It holds a shard of the data set and
+ * performs the assignment step of the CPLSI on it for the
+ * {@link ShardCoordinator}: the rows are assigned to the nearest of the
+ * broadcast centroids, side information included, and only the sums and
+ * the counts of the clusters are sent back. The rows never leave the
+ * worker, so the data set is limited by the memory of all the workers.
+ * <p>
+ * Shard {@code i} of {@code n} holds the rows of the file whose index modulo
+ * {@code n} equals to {@code i}, so every worker reads the same file and no
+ * partitioning step is needed. Labels are indexed by the worker and mapped
+ * onto the indices of the coordinator at the start of each session, the
+ * coordinator indexes them by their first row in the file.
+ * <p>
+ * Messages are written with the {@link DataOutputStream}. The worker starts
+ * the connection with its description, after that the coordinator sends the
+ * {@link Commands} and the worker replies to each of them with one of the
+ * {@link Statuses} followed by the result.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class ShardWorker implements Closeable {
+    /**
+     * Commands of the coordinator.
+     */
+    interface Commands {
+        int SEED = 0;           // Sums of the labeled rows and the first rows of the shard.
+        int STEP = 1;           // Assignment to the centroids and the sums of the clusters.
+        int ASSIGNMENTS = 2;    // Cluster indices of the rows of the shard.
+        int CLOSE = 3;          // End of the session.
+    }
+
+    /**
+     * Statuses of the replies.
+     */
+    interface Statuses {
+        int OK = 0;
+        int FAILED = 1;         // Followed by the message of the error.
+    }
+
+    private final Dataset data;
+    private final LabelDictionary dictionary;  // Labels of the shard.
+    private final int[] labels;                // Index in 'data' -> 'shard label index' or -1
+    private final long[] firstRows;            // Shard label index -> index of its first row in the file
+    private final int shard;
+    private final int shards;
+    private final ForkJoinPool pool;
+    private final DistanceMeasure measure = new VectorizedSquaredEuclideanDistance();
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param data        Rows of the shard.
+     * @param labels      Indices of the labels of the rows, {@link LabelVector#NONE}
+     *                    for the rows without side information. Coordinator
+     *                    orders the labels by their first rows here, so the
+     *                    labels should be complete to match the order of the
+     *                    {@link DataReader}.
+     * @param dictionary  Labels of the indices.
+     * @param shard       Index of the shard.
+     * @param shards      Amount of the shards.
+     * @param parallelism Amount of the threads of the assignment step.
+     */
+    public ShardWorker(Dataset data, LabelVector labels, LabelDictionary dictionary,
+                       int shard, int shards, int parallelism) {
+        if (labels.size() != data.size())
+            throw new IllegalArgumentException("Labels should be aligned with the rows of the data set!");
+        if (shard < 0 || shard >= shards)
+            throw new IllegalArgumentException("Shard index should be in [0, " + shards + ")!");
+        this.data = data;
+        this.labels = labels.toArray();
+        this.dictionary = dictionary;
+        this.shard = shard;
+        this.shards = shards;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.firstRows = new long[dictionary.size()];
+        Arrays.fill(firstRows, Long.MAX_VALUE);
+        for (int row = this.labels.length - 1; row >= 0; --row)
+            if (this.labels[row] >= 0)
+                firstRows[this.labels[row]] = (long) row * shards + shard;
+    }
+
+    /**
+     * Reads the rows of the shard from the file without keeping the other
+     * rows.
+     *
+     * @param file       Comma separated file.
+     * @param labelIndex Index of the column which represents the label
+     *                   information.
+     * @param shard      Index of the shard.
+     * @param shards     Amount of the shards.
+     * @param skip       Indices of the columns to be skipped.
+     * @return Worker of the shard.
+     * @throws IOException in case of reading errors or if the shard is empty.
+     */
+    public static ShardWorker load(File file, int labelIndex, int shard, int shards, int parallelism,
+                                   int... skip) throws IOException {
+        final DataReader.DatasetBuilder[] builder = {null};
+        final int[] row = {0};
+        new DataReader(file).forEachRecord(labelIndex, (values, label) -> {
+            if (row[0]++ % shards != shard)
+                return;
+            if (builder[0] == null)
+                builder[0] = new DataReader.DatasetBuilder(values.length);
+            builder[0].accept(values, label);
+        }, skip);
+        if (builder[0] == null)
+            throw new IOException("Shard " + shard + " of '" + file + "' is empty!");
+        return new ShardWorker(builder[0].build(), builder[0].buildLabels(), builder[0].getDictionary(),
+                shard, shards, parallelism);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Business logic
+    // ------------------------------------------------------------------------
+
+    /**
+     * Accepts a single connection of the coordinator and serves it.
+     */
+    public void serve(ServerSocket server) throws IOException {
+        try (Socket socket = server.accept()) {
+            serve(socket);
+        }
+    }
+
+    /**
+     * Serves the coordinator until the {@link Commands#CLOSE} command. The
+     * worker could serve any amount of sessions one after another.
+     */
+    public void serve(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        writeDescription(out);
+        out.flush();
+        // Map the labels of the shard onto the labels of the coordinator.
+        int[] mapping = readInts(in);
+        if (mapping.length != dictionary.size())
+            throw new IOException("Coordinator sent " + mapping.length + " label indices instead of " +
+                    dictionary.size() + "!");
+        int[] labels = new int[this.labels.length];
+        for (int row = 0; row < labels.length; ++row)
+            labels[row] = this.labels[row] >= 0 ? mapping[this.labels[row]] : LabelVector.NONE;
+        int[] assignments = new int[data.size()];
+        Arrays.fill(assignments, -1);
+        int command;
+        do {
+            command = in.readInt();
+            try {
+                switch (command) {
+                    case Commands.SEED:
+                        seed(labels, in.readInt(), out);
+                        break;
+                    case Commands.STEP:
+                        step(labels, assignments, in, out);
+                        break;
+                    case Commands.ASSIGNMENTS:
+                        out.writeInt(Statuses.OK);
+                        writeInts(out, assignments);
+                        break;
+                    case Commands.CLOSE:
+                        out.writeInt(Statuses.OK);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown command " + command + "!");
+                }
+            } catch (RuntimeException e) {
+                out.writeInt(Statuses.FAILED);
+                out.writeUTF(String.valueOf(e.getMessage()));
+            }
+            out.flush();
+        } while (command != Commands.CLOSE);
+    }
+
+    /**
+     * Stops the threads of the assignment step.
+     */
+    @Override
+    public void close() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Writes the shard index, amount of the shards, size, dimension, sum of
+     * the squared norms of the rows and the labels of the shard with the
+     * indices of their first rows in the file.
+     */
+    private void writeDescription(DataOutputStream out) throws IOException {
+        out.writeInt(shard);
+        out.writeInt(shards);
+        out.writeInt(data.size());
+        out.writeInt(data.getDimension());
+        out.writeDouble(data.getSquaredNormSum());
+        out.writeInt(dictionary.size());
+        for (BaseType label : dictionary.getLabels()) {
+            out.writeInt(label.getType());
+            out.writeUTF(label.toString());
+        }
+        for (long row : firstRows)
+            out.writeLong(row);
+    }
+
+    /**
+     * Replies with the counts and the sums of the labeled rows of each label
+     * and with the first {@code k} rows of the shard, which seed the labels
+     * without labeled rows.
+     */
+    private void seed(int[] labels, int k, DataOutputStream out) throws IOException {
+        int dimension = data.getDimension();
+        AssignmentTask.PartialSums sums = new AssignmentTask.PartialSums(k, dimension + k);
+        for (int row = 0; row < labels.length; ++row) {
+            if (labels[row] < 0)
+                continue;
+            ++sums.counts[labels[row]];
+            data.accumulate(row, sums.sums[labels[row]], 1);
+            sums.sums[labels[row]][dimension + labels[row]] += 1;
+        }
+        out.writeInt(Statuses.OK);
+        writeSums(out, sums);
+        double[] row = new double[dimension];
+        int rows = Math.min(k, data.size());
+        out.writeInt(rows);
+        for (int i = 0; i < rows; ++i) {
+            Arrays.fill(row, 0);
+            data.accumulate(i, row, 1);
+            writeDoubles(out, row);
+        }
+    }
+
+    /**
+     * Reads lambda and the centroids, assigns the rows and replies with the
+     * sums of the clusters.
+     */
+    private void step(int[] labels, int[] assignments, DataInputStream in, DataOutputStream out) throws IOException {
+        double lambda = in.readDouble();
+        int k = in.readInt();
+        int dimension = data.getDimension();
+        double[][] centroids = new double[k][];
+        for (int i = 0; i < k; ++i)
+            centroids[i] = readDoubles(in, dimension + k);
+        AssignmentTask task = new AssignmentTask(data, labels, centroids,
+                Cplsi.calculateCentroidNorms(centroids, dimension), Cplsi.calculateSideNorms(centroids, dimension),
+                assignments, measure, null, false, lambda, 0, data.size());
+        AssignmentTask.PartialSums sums = pool == null ? task.compute() : pool.invoke(task);
+        out.writeInt(Statuses.OK);
+        out.writeInt(sums.reassigned);
+        out.writeLong(sums.distanceCalls);
+        writeSums(out, sums);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Serialization
+    // ------------------------------------------------------------------------
+
+    static void writeSums(DataOutputStream out, AssignmentTask.PartialSums sums) throws IOException {
+        for (int i = 0; i < sums.counts.length; ++i) {
+            out.writeInt(sums.counts[i]);
+            writeDoubles(out, sums.sums[i]);
+        }
+    }
+
+    static AssignmentTask.PartialSums readSums(DataInputStream in, int k, int length) throws IOException {
+        AssignmentTask.PartialSums result = new AssignmentTask.PartialSums(k, length);
+        for (int i = 0; i < k; ++i) {
+            result.counts[i] = in.readInt();
+            for (int j = 0; j < length; ++j)
+                result.sums[i][j] = in.readDouble();
+        }
+        return result;
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        for (double value : values)
+            out.writeDouble(value);
+    }
+
+    static double[] readDoubles(DataInputStream in, int length) throws IOException {
+        double[] result = new double[length];
+        for (int i = 0; i < length; ++i)
+            result[i] = in.readDouble();
+        return result;
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values)
+            out.writeInt(value);
+    }
+
+    static int[] readInts(DataInputStream in) throws IOException {
+        int[] result = new int[in.readInt()];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = in.readInt();
+        return result;
+    }
+
+    /**
+     * Usage: {@code ShardWorker <port> <csv file> <label index> <shard> <shards> [skipped column...]}
+     * <p>
+     * Listens on the loopback interface, port 0 selects a free port, which
+     * is printed. Labels are kept for the {@code cplsi.sideQuantum} part of
+     * the rows chosen by the {@code cplsi.seed} seed, all labels are kept by
+     * default.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: ShardWorker <port> <csv file> <label index> <shard> <shards> " +
+                    "[skipped column...]");
+            System.exit(1);
+        }
+        int[] skip = new int[args.length - 5];
+        for (int i = 0; i < skip.length; ++i)
+            skip[i] = Integer.parseInt(args[i + 5]);
+        int shard = Integer.parseInt(args[3]);
+        try (ShardWorker worker = load(new File(args[1]), Integer.parseInt(args[2]), shard,
+                Integer.parseInt(args[4]), Runtime.getRuntime().availableProcessors(), skip);
+             ServerSocket server = new ServerSocket(Integer.parseInt(args[0]), 1, InetAddress.getLoopbackAddress())) {
+            double quantum = Double.parseDouble(System.getProperty("cplsi.sideQuantum", "1"));
+            if (quantum < 1) {
+                Random random = new Random(Long.getLong("cplsi.seed", 0) + shard);
+                for (int row = 0; row < worker.labels.length; ++row)
+                    if (random.nextDouble() > quantum)
+                        worker.labels[row] = LabelVector.NONE;
+            }
+            System.out.println(String.format("Shard %d of '%s' with %d rows is listening on port %d.",
+                    shard, args[1], worker.data.size(), server.getLocalPort()));
+            worker.serve(server);
+        }
+    }
+}
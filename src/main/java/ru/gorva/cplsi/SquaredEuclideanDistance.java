@@ -20,6 +20,8 @@
 package ru.gorva.cplsi;
 
 import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.NumericType;
 
 /**
  * This class represents is Squared Euclidean distance implementation.
@@ -33,8 +35,7 @@ public class SquaredEuclideanDistance implements DistanceMeasure {
      * @return Real value for the given {@code BaseType} object.
      */
     private double extractValue(BaseType value) {
-        Object obj = value.getValue();
-        return (obj instanceof Double) ? (double) obj : (int) obj;
+        return ((NumericType) value).doubleValue();
     }
 
     /**
@@ -61,4 +62,54 @@ public class SquaredEuclideanDistance implements DistanceMeasure {
 
         return result + lambda * subResult;
     }
+
+    /**
+     * Calculates Squared Euclidean distance between the row of the data set
+     * and the centroid. Side information part of the distance is calculated
+     * as {@code 1 - 2 * c[label] + ||c||^2} without the concatenated row.
+     *
+     * @param data     Data set without side information.
+     * @param row      Index of the row.
+     * @param label    Label index of the row, -1 if it has no side information.
+     * @param centroid Centroid with side information part.
+     * @param sideNorm Squared norm of the side information part of the centroid.
+     * @param k        Number of clusters.
+     * @param lambda   Trade-off parameter.
+     * @return Distance between the row and the centroid.
+     */
+    @Override
+    public double distance(Dataset data, int row, int label, double[] centroid,
+                           double sideNorm, int k, double lambda) {
+        double result = data.squaredDistance(row, centroid);
+        if (label >= 0)
+            result += lambda * Math.max(0, 1 - 2 * centroid[data.getDimension() + label] + sideNorm);
+
+        return result;
+    }
+
+    /**
+     * Calculates Squared Euclidean distance between two centroids.
+     *
+     * @param centroid1 Centroid 1.
+     * @param centroid2 Centroid 2.
+     * @param k         Number of clusters.
+     * @param lambda    Trade-off parameter.
+     * @return Distance between the centroids.
+     */
+    @Override
+    public double distance(double[] centroid1, double[] centroid2, int k, double lambda) {
+        int size = centroid1.length - k;
+        double result = 0, subResult = 0, diff;
+
+        for (int i = 0; i < size; ++i) {
+            diff = centroid1[i] - centroid2[i];
+            result += diff * diff;
+        }
+        for (int i = size; i < size + k; ++i) {
+            diff = centroid1[i] - centroid2[i];
+            subResult += diff * diff;
+        }
+
+        return result + lambda * subResult;
+    }
 }
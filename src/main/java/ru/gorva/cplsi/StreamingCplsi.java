@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.ArrayDataset;
+import ru.gorva.data.BaseType;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.LabelDictionary;
+
+import java.util.Set;
+
+/**
+ * The {@code StreamingCplsi} class is a single-pass online variant of the
+ * {@link Cplsi}. Records are consumed one at a time, each of them moves its
+ * nearest centroid with the learning rate inverse to the amount of records
+ * the centroid has received. Memory usage does not depend on the length of
+ * the stream: only the centroids and their counters are kept.
+ * <p>
+ * Clusters are seeded by the first records: a labeled record seeds the
+ * cluster of its label, an unlabeled one seeds the first cluster which is not
+ * seeded yet. Cluster index is the index of its label in the iteration order
+ * of the label set, as for {@link Cplsi}.
+ * <p>
+ * Instances are thread safe, so the state could be queried while the stream
+ * is consumed. Implements {@link DataReader.RecordConsumer}, so a file could
+ * be clustered with {@link DataReader#forEachRecord(int, DataReader.RecordConsumer, int...)}
+ * without loading it.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class StreamingCplsi implements DataReader.RecordConsumer {
+    private final int k;                                // Amount of clusters.
+    private final int dimension;                        // Amount of features.
+    private final double lambda;                        // Trade-off parameter.
+    private final LabelDictionary dictionary;           // 'cluster label index' <-> 'cluster label'
+
+    private DistanceMeasure measure;
+
+    private final double[][] centroids;     // Centroids with side information part.
+    private final double[] sideNorms;       // Squared norms of the side information parts.
+    private final long[] counts;            // Amount of records received by each cluster.
+    private final ArrayDataset record;      // Single row buffer of the current record.
+    private int seeded;                     // Amount of seeded clusters.
+    private long size;                      // Amount of consumed records.
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param dimension Amount of features of the records.
+     * @param labelSet  Distinct label set, defines the amount of clusters.
+     * @param lambda    Trade-off parameter.
+     */
+    public StreamingCplsi(int dimension, Set<BaseType> labelSet, double lambda) {
+        this(dimension, new LabelDictionary(labelSet), lambda);
+    }
+
+    /**
+     * @param dimension  Amount of features of the records.
+     * @param dictionary Labels of the clusters, defines the amount of
+     *                   clusters.
+     * @param lambda     Trade-off parameter.
+     */
+    public StreamingCplsi(int dimension, LabelDictionary dictionary, double lambda) {
+        this.k = dictionary.size();
+        this.dimension = dimension;
+        this.lambda = lambda;
+        this.measure = new VectorizedSquaredEuclideanDistance();
+        this.dictionary = dictionary;
+        this.centroids = new double[k][dimension + k];
+        this.sideNorms = new double[k];
+        this.counts = new long[k];
+        this.record = new ArrayDataset(1, dimension);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    public synchronized DistanceMeasure getMeasure() {
+        return measure;
+    }
+
+    public synchronized void setMeasure(DistanceMeasure measure) {
+        this.measure = measure;
+    }
+
+    /**
+     * @return Label of the cluster with the given index.
+     */
+    public BaseType getClusterLabel(int cluster) {
+        return dictionary.get(cluster);
+    }
+
+    /**
+     * @return Current centroids of the clusters without side information
+     * part. Centroids of the clusters which are not seeded yet are zero.
+     */
+    public synchronized double[][] getCentroids() {
+        double[][] result = new double[k][dimension];
+        for (int i = 0; i < k; ++i)
+            System.arraycopy(centroids[i], 0, result[i], 0, dimension);
+        return result;
+    }
+
+    /**
+     * @return Amount of records received by each cluster.
+     */
+    public synchronized long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * @return Amount of consumed records.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Business logic
+    // ------------------------------------------------------------------------
+
+    /**
+     * Consumes the record and updates the centroid of its cluster.
+     *
+     * @param values Features of the record.
+     * @param label  Side information of the record, {@code null} if there is none.
+     * @return Index of the cluster the record was assigned to.
+     */
+    public synchronized int add(double[] values, BaseType label) {
+        int labelIndex = load(values, label);
+        int cluster;
+        if (labelIndex >= 0 && counts[labelIndex] == 0)
+            cluster = labelIndex;
+        else if (labelIndex < 0 && seeded < k)
+            cluster = firstUnseeded();
+        else
+            cluster = nearestCentroid(labelIndex);
+        if (counts[cluster] == 0)
+            ++seeded;
+        Cplsi.moveCentroid(centroids[cluster], record, 0, labelIndex, 1.0 / ++counts[cluster]);
+        sideNorms[cluster] = calculateSideNorm(centroids[cluster]);
+        ++size;
+        return cluster;
+    }
+
+    /**
+     * Consumes all the rows of the data set in their order.
+     *
+     * @param data   Features of the records.
+     * @param labels Side information aligned with the rows of the
+     *               {@code data}, {@code null} for the rows without it.
+     */
+    public synchronized void addAll(Dataset data, BaseType[] labels) {
+        double[] values = new double[dimension];
+        for (int row = 0; row < data.size(); ++row) {
+            data.copyRow(row, values, 0);
+            add(values, labels == null ? null : labels[row]);
+        }
+    }
+
+    /**
+     * Same as {@link #add(double[], BaseType)}.
+     */
+    @Override
+    public void accept(double[] values, BaseType label) {
+        add(values, label);
+    }
+
+    /**
+     * Finds the cluster of the record without changing the state.
+     *
+     * @param values Features of the record.
+     * @param label  Side information of the record, {@code null} if there is none.
+     * @return Index of the nearest seeded cluster, -1 if no cluster is seeded.
+     */
+    public synchronized int assign(double[] values, BaseType label) {
+        return nearestCentroid(load(values, label));
+    }
+
+    /**
+     * Copies the record into the buffer.
+     *
+     * @return Label index of the record, -1 if it has no side information.
+     */
+    private int load(double[] values, BaseType label) {
+        if (values.length != dimension)
+            throw new IllegalArgumentException("Record should have " + dimension + " values!");
+        System.arraycopy(values, 0, record.getValues(), 0, dimension);
+        if (label == null)
+            return -1;
+        int index = dictionary.indexOf(label);
+        if (index < 0)
+            throw new IllegalArgumentException("Unknown label '" + label + "'!");
+        return index;
+    }
+
+    /**
+     * @return Index of the seeded centroid closest to the record in the buffer.
+     */
+    private int nearestCentroid(int labelIndex) {
+        int minIndex = -1;
+        double distance;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < k; ++i) {
+            if (counts[i] == 0)
+                continue;
+            distance = measure.distance(record, 0, labelIndex, centroids[i], sideNorms[i], k, lambda);
+            if (distance < minDistance) {
+                minDistance = distance;
+                minIndex = i;
+            }
+        }
+        return minIndex;
+    }
+
+    private int firstUnseeded() {
+        int cluster = 0;
+        while (counts[cluster] != 0)
+            ++cluster;
+        return cluster;
+    }
+
+    private double calculateSideNorm(double[] centroid) {
+        double result = 0;
+        for (int i = dimension; i < dimension + k; ++i)
+            result += centroid[i] * centroid[i];
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.cplsi;
+
+import ru.gorva.data.ArrayDataset;
+import ru.gorva.data.Dataset;
+import ru.gorva.data.DirectDataset;
+import ru.gorva.data.DistanceKernel;
+import ru.gorva.data.DistanceKernels;
+import ru.gorva.data.FloatDataset;
+
+/**
+ * Squared Euclidean distance over the primitive arrays computed by the
+ * {@link DistanceKernel}. Rows of the row-major {@link ArrayDataset} are
+ * passed to the kernel directly, rows of the other data sets are handled by
+ * the data set itself.
+ * <p>
+ * With the scalar kernel the distances are equal to the ones of the
+ * {@link SquaredEuclideanDistance}, vectorized kernel sums the values in a
+ * different order and the distances could differ in the last bits.
+ * <p>
+ * Distances of the rows of the row-major {@link FloatDataset} to all the
+ * centroids are calculated in single precision: features of the centroids
+ * are rounded to {@code float} once per call. Rows of the
+ * {@link DirectDataset} are copied by tiles of {@link #TILE_BYTES} into a
+ * heap array, which stays in the cache while the tile is compared with all
+ * the centroids.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class VectorizedSquaredEuclideanDistance extends SquaredEuclideanDistance {
+    /**
+     * Size of a tile of the rows or the centroids in bytes.
+     */
+    static final int TILE_BYTES = 16 * 1024;
+
+    private final DistanceKernel kernel;
+
+    /**
+     * Uses the {@link DistanceKernels#getDefault() default} kernel.
+     */
+    public VectorizedSquaredEuclideanDistance() {
+        this(DistanceKernels.getDefault());
+    }
+
+    /**
+     * @param kernel Kernel of the computations.
+     */
+    public VectorizedSquaredEuclideanDistance(DistanceKernel kernel) {
+        if (kernel == null)
+            throw new NullPointerException("Kernel should be initialized!");
+        this.kernel = kernel;
+    }
+
+    @Override
+    public double distance(Dataset data, int row, int label, double[] centroid,
+                           double sideNorm, int k, double lambda) {
+        int dimension = data.getDimension();
+        double result;
+        if (data instanceof ArrayDataset && data.getLayout() == Dataset.Layouts.ROW_MAJOR) {
+            ArrayDataset array = (ArrayDataset) data;
+            result = kernel.squaredDistance(array.getValues(), array.offset(row), centroid, 0, dimension);
+        } else
+            result = data.squaredDistance(row, centroid);
+        if (label >= 0)
+            result += lambda * Math.max(0, 1 - 2 * centroid[dimension + label] + sideNorm);
+
+        return result;
+    }
+
+    @Override
+    public void distances(Dataset data, int from, int to, int[] labels, double[][] centroids,
+                          double[] centroidNorms, double[] sideNorms, int k, double lambda,
+                          double[] result) {
+        if (data instanceof DirectDataset) {
+            directDistances((DirectDataset) data, from, to, labels, centroids, sideNorms, k, lambda, result);
+            return;
+        }
+        if (!(data instanceof FloatDataset) || data.getLayout() != Dataset.Layouts.ROW_MAJOR) {
+            super.distances(data, from, to, labels, centroids, centroidNorms, sideNorms, k, lambda, result);
+            return;
+        }
+        FloatDataset floats = (FloatDataset) data;
+        float[] values = floats.getValues();
+        int dimension = data.getDimension();
+        float[][] narrowed = narrow(centroids, dimension);
+        double distance;
+        int label;
+        for (int row = from, index = 0; row < to; ++row) {
+            label = labels[row];
+            for (int i = 0; i < k; ++i) {
+                distance = kernel.squaredDistance(values, floats.offset(row), narrowed[i], 0, dimension);
+                if (label >= 0)
+                    distance += lambda * Math.max(0, 1 - 2 * centroids[i][dimension + label] + sideNorms[i]);
+                result[index++] = distance;
+            }
+        }
+    }
+
+    /**
+     * Distances of the rows of the {@link DirectDataset} copied by tiles.
+     */
+    private void directDistances(DirectDataset data, int from, int to, int[] labels, double[][] centroids,
+                                 double[] sideNorms, int k, double lambda, double[] result) {
+        int dimension = data.getDimension();
+        int tile = Math.max(1, TILE_BYTES / (Double.BYTES * Math.max(dimension, 1)));
+        double[] values = new double[Math.min(tile, to - from) * dimension];
+        double distance;
+        int rowEnd, label;
+        for (int rowStart = from, index = 0; rowStart < to; rowStart = rowEnd) {
+            rowEnd = Math.min(rowStart + tile, to);
+            for (int row = rowStart; row < rowEnd; ++row)
+                data.copyRow(row, values, (row - rowStart) * dimension);
+            for (int row = rowStart; row < rowEnd; ++row) {
+                label = labels[row];
+                for (int i = 0; i < k; ++i) {
+                    distance = kernel.squaredDistance(values, (row - rowStart) * dimension, centroids[i], 0,
+                            dimension);
+                    if (label >= 0)
+                        distance += lambda * Math.max(0, 1 - 2 * centroids[i][dimension + label] + sideNorms[i]);
+                    result[index++] = distance;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Features of the centroids rounded to {@code float}.
+     */
+    static float[][] narrow(double[][] centroids, int dimension) {
+        float[][] result = new float[centroids.length][dimension];
+        for (int i = 0; i < centroids.length; ++i)
+            for (int j = 0; j < dimension; ++j)
+                result[i][j] = (float) centroids[i][j];
+        return result;
+    }
+
+    @Override
+    public double distance(double[] centroid1, double[] centroid2, int k, double lambda) {
+        int size = centroid1.length - k;
+        return kernel.squaredDistance(centroid1, 0, centroid2, 0, size)
+                + lambda * kernel.squaredDistance(centroid1, size, centroid2, size, k);
+    }
+
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+}
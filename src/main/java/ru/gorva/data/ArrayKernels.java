@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+/**
+ * Arithmetic kernels on the ranges of the primitive arrays. Results are
+ * written into the arrays of the caller, so the kernels do not allocate, and
+ * values are processed in their order, so the results do not depend on the
+ * platform. Kernels do not check the bounds of the ranges besides the checks
+ * of the array accesses.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public final class ArrayKernels {
+
+    private ArrayKernels() {
+    }
+
+    /**
+     * Element-wise addition {@code a += b}.
+     */
+    public static void add(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        for (int i = 0; i < length; ++i)
+            a[aOffset + i] += b[bOffset + i];
+    }
+
+    /**
+     * Element-wise scaled addition {@code a += factor * b}.
+     */
+    public static void addScaled(double[] a, int aOffset, double[] b, int bOffset, double factor, int length) {
+        for (int i = 0; i < length; ++i)
+            a[aOffset + i] += factor * b[bOffset + i];
+    }
+
+    /**
+     * Element-wise scaled addition {@code a += factor * b}, where the values
+     * of {@code b} are {@code bStride} apart.
+     */
+    public static void addScaled(double[] a, int aOffset, double[] b, int bOffset, int bStride,
+                                 double factor, int length) {
+        if (bStride == 1)
+            addScaled(a, aOffset, b, bOffset, factor, length);
+        else
+            for (int i = 0, index = bOffset; i < length; ++i, index += bStride)
+                a[aOffset + i] += factor * b[index];
+    }
+
+    /**
+     * Element-wise scaled addition {@code a += factor * b} of the single
+     * precision values, which are {@code bStride} apart.
+     */
+    public static void addScaled(double[] a, int aOffset, float[] b, int bOffset, int bStride,
+                                 double factor, int length) {
+        for (int i = 0, index = bOffset; i < length; ++i, index += bStride)
+            a[aOffset + i] += factor * b[index];
+    }
+
+    /**
+     * Element-wise division {@code result = a / denominator}, the
+     * {@code result} could be the {@code a} itself.
+     */
+    public static void divide(double[] a, int aOffset, double denominator,
+                              double[] result, int resultOffset, int length) {
+        for (int i = 0; i < length; ++i)
+            result[resultOffset + i] = a[aOffset + i] / denominator;
+    }
+
+    /**
+     * @return Squared euclidean distance between the ranges.
+     */
+    public static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double result = 0, diff;
+        for (int i = 0; i < length; ++i) {
+            diff = a[aOffset + i] - b[bOffset + i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    /**
+     * @return Dot product of the ranges.
+     */
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double result = 0;
+        for (int i = 0; i < length; ++i)
+            result += a[aOffset + i] * b[bOffset + i];
+        return result;
+    }
+}
@@ -40,16 +40,27 @@ public abstract class BaseType {
      */
     public static BaseType createDataValue(Object value) {
         String string = value.toString().trim();
-        try {
-            int integer = Integer.parseInt(string);
-            return new IntegerType(integer);
-        } catch (NumberFormatException e) {
-            try {
-                double real = Double.parseDouble(string);
-                return new RealType(real);
-            } catch (NumberFormatException e2) {
+        return createDataValue(string, NumberParser.classify(string));
+    }
+
+    /**
+     * Factory method which creates the data value of the known type from the
+     * given string.
+     * @param string Trimmed value to be wrapped.
+     * @param type   Type of the value, see {@link NumberParser#classify(CharSequence)}.
+     * @return value wrapped into one of the BaseType's children.
+     */
+    public static BaseType createDataValue(String string, int type) {
+        switch (type) {
+            case Types.INTEGER:
+                return new IntegerType(NumberParser.parseInt(string, 0, string.length()));
+            case Types.REAL:
+                return new RealType(NumberParser.parseDouble(string));
+            case Types.STRING:
                 return new StringType(string);
-            }
+            default:
+                throw new IllegalArgumentException("Unknown type! Possible values are " +
+                        "Types.INTEGER, Types.REAL, and Types.STRING.");
         }
     }
 
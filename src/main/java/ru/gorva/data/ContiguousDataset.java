@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+/**
+ * Layout arithmetic of the data sets stored in a single contiguous array.
+ * Element {@code (row, column)} is located at
+ * {@code offset(row) + column * stride()} of the array, so the consumers
+ * could iterate over a row without knowing the layout.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+abstract class ContiguousDataset extends Dataset {
+    protected final int layout;
+
+    /**
+     * @param length    Length of the array of the values.
+     * @param size      Amount of rows.
+     * @param dimension Amount of columns.
+     * @param layout    Layout of the values, one of the {@link Layouts}.
+     */
+    ContiguousDataset(int length, int size, int dimension, int layout) {
+        super(size, dimension);
+        if (layout != Layouts.ROW_MAJOR && layout != Layouts.COLUMN_MAJOR)
+            throw new IllegalArgumentException("Unknown layout! Possible values are " +
+                    "Layouts.ROW_MAJOR and Layouts.COLUMN_MAJOR.");
+        if (length < checkCapacity(size, dimension))
+            throw new IllegalArgumentException("Length of the values is less than 'size * dimension'!");
+        this.layout = layout;
+    }
+
+    /**
+     * @return Length of the array of {@code size} rows of {@code dimension}
+     * values.
+     */
+    static int checkCapacity(int size, int dimension) {
+        if (size < 0 || dimension < 0)
+            throw new IllegalArgumentException("Size and dimension can't be negative!");
+        long capacity = (long) size * dimension;
+        if (capacity > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Data set is too large for a single array!");
+        return (int) capacity;
+    }
+
+    /**
+     * @return Index of the first value of the {@code row} in the array of the values.
+     */
+    public int offset(int row) {
+        return layout == Layouts.ROW_MAJOR ? row * dimension : row;
+    }
+
+    /**
+     * @return Distance between two consecutive values of a row in the array of the values.
+     */
+    public int stride() {
+        return layout == Layouts.ROW_MAJOR ? 1 : size;
+    }
+
+    @Override
+    public int getLayout() {
+        return layout;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+import java.util.List;
+
+/**
+ * The {@code Dataset} class represents numeric data set: {@code size} rows
+ * of {@code dimension} values each. Implementations differ in the storage of
+ * the values and provide row-wise kernels used by the clustering, so the
+ * consumers do not depend on the storage.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public abstract class Dataset {
+    public interface Layouts {
+        int ROW_MAJOR = 0;
+        int COLUMN_MAJOR = 1;
+    }
+
+    protected final int size;           // Amount of rows.
+    protected final int dimension;      // Amount of columns.
+    protected volatile double[] squaredNorms;   // Cached squared norms of the rows.
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    protected Dataset(int size, int dimension) {
+        if (size < 0 || dimension < 0)
+            throw new IllegalArgumentException("Size and dimension can't be negative!");
+        this.size = size;
+        this.dimension = dimension;
+    }
+
+    /**
+     * Adapter for the rows of {@code BaseType} values. All the values should
+     * be numeric.
+     *
+     * @param rows   Rows of the same length.
+     * @param layout Layout of the values, one of the {@link Layouts}.
+     * @return Data set with values of the {@code rows}.
+     */
+    public static ArrayDataset fromRows(List<BaseType[]> rows, int layout) {
+        int dimension = rows.isEmpty() ? 0 : rows.get(0).length;
+        ArrayDataset dataset = new ArrayDataset(rows.size(), dimension, layout);
+        int row = 0;
+        for (BaseType[] values : rows) {
+            if (values.length != dimension)
+                throw new IllegalArgumentException("Length of the rows should be the same!");
+            for (int i = 0; i < dimension; ++i) {
+                if (!(values[i] instanceof NumericType))
+                    throw new IllegalArgumentException("Value '" + values[i] + "' is not numeric!");
+                dataset.set(row, i, ((NumericType) values[i]).doubleValue());
+            }
+            ++row;
+        }
+        return dataset;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Element access
+    // ------------------------------------------------------------------------
+
+    public abstract double get(int row, int column);
+
+    /**
+     * @throws UnsupportedOperationException if the data set is read only.
+     */
+    public void set(int row, int column, double value) {
+        throw new UnsupportedOperationException("Data set is read only!");
+    }
+
+    /**
+     * Copies values of the {@code row} into {@code dest} starting from the
+     * {@code destOffset} position.
+     */
+    public void copyRow(int row, double[] dest, int destOffset) {
+        for (int i = 0; i < dimension; ++i)
+            dest[destOffset + i] = get(row, i);
+    }
+
+    /**
+     * @return Copy of the {@code row} wrapped into {@code RealType} values.
+     */
+    public BaseType[] toRow(int row) {
+        BaseType[] result = new BaseType[dimension];
+        for (int i = 0; i < dimension; ++i)
+            result[i] = new RealType(get(row, i));
+        return result;
+    }
+
+    /**
+     * @return Copy of the data set stored in the array of the given layout.
+     */
+    public ArrayDataset toLayout(int layout) {
+        ArrayDataset result = new ArrayDataset(size, dimension, layout);
+        for (int row = 0; row < size; ++row)
+            for (int i = 0; i < dimension; ++i)
+                result.set(row, i, get(row, i));
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Kernels
+    // ------------------------------------------------------------------------
+
+    /**
+     * @param row   Index of the row.
+     * @param point Point of at least {@code dimension} values, only the first
+     *              {@code dimension} values are taken into account.
+     * @return Squared Euclidean distance between the row and the point.
+     */
+    public double squaredDistance(int row, double[] point) {
+        double result = 0, diff;
+        for (int i = 0; i < dimension; ++i) {
+            diff = get(row, i) - point[i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the {@code row} multiplied by {@code factor} to the first
+     * {@code dimension} values of the {@code sum}.
+     */
+    public void accumulate(int row, double[] sum, double factor) {
+        for (int i = 0; i < dimension; ++i)
+            sum[i] += factor * get(row, i);
+    }
+
+    /**
+     * Squared norms are calculated on the first call and cached, modification
+     * of the values resets the cache.
+     *
+     * @return Squared Euclidean norms of the rows. Should not be modified.
+     */
+    public double[] getSquaredNorms() {
+        double[] result = squaredNorms;
+        if (result == null) {
+            double[] origin = new double[dimension];
+            result = new double[size];
+            for (int row = 0; row < size; ++row)
+                result[row] = squaredDistance(row, origin);
+            squaredNorms = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return Sum of the squared Euclidean norms of the rows. Cached norms
+     * are used if any, otherwise the rows are traversed without caching.
+     */
+    public double getSquaredNormSum() {
+        double[] norms = squaredNorms;
+        double result = 0;
+        if (norms != null)
+            for (double norm : norms)
+                result += norm;
+        else {
+            double[] origin = new double[dimension];
+            for (int row = 0; row < size; ++row)
+                result += squaredDistance(row, origin);
+        }
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Layout of the values, one of the {@link Layouts}.
+     */
+    public abstract int getLayout();
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * The {@code DirectDataset} class represents numeric data set stored row by
+ * row in the direct buffers outside of the heap, so the heap usage and the
+ * work of the garbage collector do not depend on the amount of values. Rows
+ * are split into the chunks of at most {@link #MAX_CHUNK_BYTES}, a row never
+ * crosses the chunk border, so the amount of values is not limited by the
+ * size of a single array.
+ * <p>
+ * Memory of the buffers is released when the data set is collected.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class DirectDataset extends Dataset {
+    public static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final DoubleBuffer[] chunks;
+    private final int chunkRows;            // Amount of rows in each chunk except the last one.
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Creates zero filled data set.
+     *
+     * @param size      Amount of rows.
+     * @param dimension Amount of columns.
+     */
+    public DirectDataset(int size, int dimension) {
+        super(size, dimension);
+        chunkRows = Math.max(1, dimension == 0 ? size : MAX_CHUNK_BYTES / (dimension * Double.BYTES));
+        chunks = new DoubleBuffer[size == 0 ? 0 : (size - 1) / chunkRows + 1];
+        for (int i = 0; i < chunks.length; ++i) {
+            int rows = Math.min(chunkRows, size - i * chunkRows);
+            chunks[i] = ByteBuffer.allocateDirect(rows * dimension * Double.BYTES)
+                    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * @return Copy of the data set outside of the heap.
+     */
+    public static DirectDataset copyOf(Dataset data) {
+        DirectDataset result = new DirectDataset(data.size(), data.getDimension());
+        int dimension = data.getDimension();
+        double[] row = new double[dimension];
+        for (int i = 0; i < data.size(); ++i) {
+            data.copyRow(i, row, 0);
+            DoubleBuffer chunk = result.chunk(i);
+            int offset = result.offset(i);
+            for (int j = 0; j < dimension; ++j)
+                chunk.put(offset + j, row[j]);
+        }
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Element access
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Chunk which contains the {@code row}.
+     */
+    public DoubleBuffer chunk(int row) {
+        return chunks[row / chunkRows];
+    }
+
+    /**
+     * @return Index of the first value of the {@code row} in its
+     * {@link #chunk(int) chunk}.
+     */
+    public int offset(int row) {
+        return (row % chunkRows) * dimension;
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return chunk(row).get(offset(row) + column);
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        chunk(row).put(offset(row) + column, value);
+        squaredNorms = null;
+    }
+
+    @Override
+    public void copyRow(int row, double[] dest, int destOffset) {
+        DoubleBuffer chunk = chunk(row);
+        int offset = offset(row);
+        for (int i = 0; i < dimension; ++i)
+            dest[destOffset + i] = chunk.get(offset + i);
+    }
+
+    @Override
+    public double squaredDistance(int row, double[] point) {
+        DoubleBuffer chunk = chunk(row);
+        int offset = offset(row);
+        double result = 0, diff;
+        for (int i = 0; i < dimension; ++i) {
+            diff = chunk.get(offset + i) - point[i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    @Override
+    public void accumulate(int row, double[] sum, double factor) {
+        DoubleBuffer chunk = chunk(row);
+        int offset = offset(row);
+        for (int i = 0; i < dimension; ++i)
+            sum[i] += factor * chunk.get(offset + i);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    @Override
+    public int getLayout() {
+        return Layouts.ROW_MAJOR;
+    }
+}
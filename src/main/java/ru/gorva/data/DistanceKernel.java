@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+/**
+ * Primitive kernels of the distance computations over the ranges of the
+ * arrays. Implementations should not allocate memory.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ * @see DistanceKernels
+ */
+public interface DistanceKernel {
+    /**
+     * @return Squared Euclidean distance between {@code length} values of
+     * {@code a} starting at {@code aOffset} and {@code length} values of
+     * {@code b} starting at {@code bOffset}.
+     */
+    double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * @return Dot product of {@code length} values of {@code a} starting at
+     * {@code aOffset} and {@code length} values of {@code b} starting at
+     * {@code bOffset}.
+     */
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * Calculates dot products of {@code length} values of {@code a} starting
+     * at {@code aOffset} and the first {@code length} values of each of the
+     * arrays {@code b[from]}, ..., {@code b[to - 1]}. Values of {@code a} are
+     * loaded once for several arrays of {@code b}.
+     *
+     * @param result       Recipient of the products, product with
+     *                     {@code b[i]} is stored at
+     *                     {@code result[resultOffset + i - from]}.
+     */
+    void dots(double[] a, int aOffset, double[][] b, int from, int to, int length,
+              double[] result, int resultOffset);
+
+    /**
+     * Single precision variant of the
+     * {@link #squaredDistance(double[], int, double[], int, int)}. Lanes are
+     * summed in single precision, the result is widened.
+     */
+    double squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Single precision variant of the
+     * {@link #dots(double[], int, double[][], int, int, int, double[], int)}.
+     * Lanes are summed in single precision, the results are widened.
+     */
+    void dots(float[] a, int aOffset, float[][] b, int from, int to, int length,
+              double[] result, int resultOffset);
+}
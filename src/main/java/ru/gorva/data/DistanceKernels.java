@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+/**
+ * Provides the implementations of the {@link DistanceKernel}. The default
+ * kernel uses the lanes of the {@code jdk.incubator.vector} module if the
+ * module is available, i.e. the application is compiled and run on Java 17
+ * or newer with {@code --add-modules jdk.incubator.vector}, and falls back to
+ * the scalar loops otherwise. Vectorization could be disabled by the
+ * {@code cplsi.vector=false} system property.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public final class DistanceKernels {
+    private static final String VECTOR_KERNEL = "ru.gorva.data.VectorDistanceKernel";
+    private static final DistanceKernel SCALAR = new ScalarKernel();
+    private static final DistanceKernel DEFAULT = load();
+
+    private DistanceKernels() {
+    }
+
+    /**
+     * @return Vectorized kernel if available, scalar kernel otherwise.
+     */
+    public static DistanceKernel getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return Kernel of the plain loops, which sums the values in their order.
+     */
+    public static DistanceKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return Whether the default kernel is vectorized.
+     */
+    public static boolean isVectorized() {
+        return DEFAULT != SCALAR;
+    }
+
+    private static DistanceKernel load() {
+        if (!Boolean.parseBoolean(System.getProperty("cplsi.vector", "true")))
+            return SCALAR;
+        try {
+            return (DistanceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Class is not compiled or the module is not resolved.
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Scalar implementation of the kernels.
+     */
+    private static class ScalarKernel implements DistanceKernel {
+        @Override
+        public double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return ArrayKernels.squaredDistance(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return ArrayKernels.dot(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public void dots(double[] a, int aOffset, double[][] b, int from, int to, int length,
+                         double[] result, int resultOffset) {
+            int j = from;
+            double value, s0, s1, s2, s3;
+            double[] b0, b1, b2, b3;
+            // Four products at once, each value of 'a' is loaded once.
+            for (; j + 4 <= to; j += 4) {
+                b0 = b[j];
+                b1 = b[j + 1];
+                b2 = b[j + 2];
+                b3 = b[j + 3];
+                s0 = s1 = s2 = s3 = 0;
+                for (int i = 0; i < length; ++i) {
+                    value = a[aOffset + i];
+                    s0 += value * b0[i];
+                    s1 += value * b1[i];
+                    s2 += value * b2[i];
+                    s3 += value * b3[i];
+                }
+                result[resultOffset + j - from] = s0;
+                result[resultOffset + j - from + 1] = s1;
+                result[resultOffset + j - from + 2] = s2;
+                result[resultOffset + j - from + 3] = s3;
+            }
+            for (; j < to; ++j)
+                result[resultOffset + j - from] = dot(a, aOffset, b[j], 0, length);
+        }
+
+        @Override
+        public double squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            float result = 0, diff;
+            for (int i = 0; i < length; ++i) {
+                diff = a[aOffset + i] - b[bOffset + i];
+                result += diff * diff;
+            }
+            return result;
+        }
+
+        @Override
+        public void dots(float[] a, int aOffset, float[][] b, int from, int to, int length,
+                         double[] result, int resultOffset) {
+            float value, s0, s1, s2, s3;
+            float[] b0, b1, b2, b3;
+            int j = from;
+            for (; j + 4 <= to; j += 4) {
+                b0 = b[j];
+                b1 = b[j + 1];
+                b2 = b[j + 2];
+                b3 = b[j + 3];
+                s0 = s1 = s2 = s3 = 0;
+                for (int i = 0; i < length; ++i) {
+                    value = a[aOffset + i];
+                    s0 += value * b0[i];
+                    s1 += value * b1[i];
+                    s2 += value * b2[i];
+                    s3 += value * b3[i];
+                }
+                result[resultOffset + j - from] = s0;
+                result[resultOffset + j - from + 1] = s1;
+                result[resultOffset + j - from + 2] = s2;
+                result[resultOffset + j - from + 3] = s3;
+            }
+            for (; j < to; ++j) {
+                b0 = b[j];
+                s0 = 0;
+                for (int i = 0; i < length; ++i)
+                    s0 += a[aOffset + i] * b0[i];
+                result[resultOffset + j - from] = s0;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+/**
+ * The {@code FloatDataset} class represents numeric data set stored in a
+ * single contiguous array of single precision values, which takes half of
+ * the memory of the {@link ArrayDataset}. Values are widened to
+ * {@code double} on access, so the sums of the rows are accumulated in
+ * double precision. Values could be laid out either row by row or column by
+ * column, see {@link Layouts}.
+ * <p>
+ * Element {@code (row, column)} is located at
+ * {@code offset(row) + column * stride()} of the {@link #getValues()} array.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class FloatDataset extends ContiguousDataset {
+    private final float[] values;
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Creates zero filled data set with row-major layout.
+     *
+     * @param size      Amount of rows.
+     * @param dimension Amount of columns.
+     */
+    public FloatDataset(int size, int dimension) {
+        this(size, dimension, Layouts.ROW_MAJOR);
+    }
+
+    /**
+     * Creates zero filled data set.
+     *
+     * @param size      Amount of rows.
+     * @param dimension Amount of columns.
+     * @param layout    Layout of the values, one of the {@link Layouts}.
+     */
+    public FloatDataset(int size, int dimension, int layout) {
+        this(new float[checkCapacity(size, dimension)], size, dimension, layout);
+    }
+
+    /**
+     * Wraps provided values without copying.
+     *
+     * @param values    Values laid out according to the {@code layout}.
+     * @param size      Amount of rows.
+     * @param dimension Amount of columns.
+     * @param layout    Layout of the values, one of the {@link Layouts}.
+     */
+    public FloatDataset(float[] values, int size, int dimension, int layout) {
+        super(checkNotNull(values).length, size, dimension, layout);
+        this.values = values;
+    }
+
+    /**
+     * @return Row-major copy of the data set with the values rounded to the
+     * nearest {@code float}.
+     */
+    public static FloatDataset copyOf(Dataset data) {
+        FloatDataset result = new FloatDataset(data.size(), data.getDimension());
+        int dimension = data.getDimension();
+        for (int row = 0, index = 0; row < data.size(); ++row)
+            for (int i = 0; i < dimension; ++i)
+                result.values[index++] = (float) data.get(row, i);
+        return result;
+    }
+
+    private static float[] checkNotNull(float[] values) {
+        if (values == null)
+            throw new NullPointerException("Values should be initialized!");
+        return values;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Element access
+    // ------------------------------------------------------------------------
+
+    @Override
+    public double get(int row, int column) {
+        return values[offset(row) + column * stride()];
+    }
+
+    /**
+     * Stores the value rounded to the nearest {@code float}.
+     */
+    @Override
+    public void set(int row, int column, double value) {
+        values[offset(row) + column * stride()] = (float) value;
+        squaredNorms = null;
+    }
+
+    @Override
+    public void copyRow(int row, double[] dest, int destOffset) {
+        int stride = stride();
+        for (int i = 0, index = offset(row); i < dimension; ++i, index += stride)
+            dest[destOffset + i] = values[index];
+    }
+
+    @Override
+    public double squaredDistance(int row, double[] point) {
+        int stride = stride();
+        double result = 0, diff;
+        for (int i = 0, index = offset(row); i < dimension; ++i, index += stride) {
+            diff = values[index] - point[i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    @Override
+    public void accumulate(int row, double[] sum, double factor) {
+        ArrayKernels.addScaled(sum, 0, values, offset(row), stride(), factor, dimension);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Underlying array of the values. Changes are reflected in the
+     * data set, except the cached {@link #getSquaredNorms() norms}.
+     */
+    public float[] getValues() {
+        return values;
+    }
+}
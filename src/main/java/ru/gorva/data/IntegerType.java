@@ -41,6 +41,11 @@ public class IntegerType extends NumericType {
         return value;
     }
 
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
     /**
      * Element-wise addition of the current values by values stored in
      * {@code value}.
@@ -50,10 +55,7 @@ public class IntegerType extends NumericType {
      */
     @Override
     public NumericType add(NumericType value) {
-        Object obj = value.getValue();
-        int val = (value.getType() == Types.REAL) ? (int) ((double) obj) : (int) obj;
-        this.value += val;
-        return this;
+        return add(value.doubleValue());
     }
 
     /**
@@ -65,9 +67,18 @@ public class IntegerType extends NumericType {
      */
     @Override
     public NumericType div(NumericType value) {
-        Object obj = value.getValue();
-        int val = (value.getType() == Types.REAL) ? (int) ((double) obj) : (int) obj;
-        this.value /= val;
+        return div(value.doubleValue());
+    }
+
+    @Override
+    public NumericType add(double value) {
+        this.value += (int) value;
+        return this;
+    }
+
+    @Override
+    public NumericType div(double value) {
+        this.value /= (int) value;
         return this;
     }
 
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mapping between the labels and their indices. Indices are assigned in the
+ * order the labels are added, starting with 0, so the labels of the rows
+ * could be stored as the primitive indices of a {@link LabelVector}.
+ * <p>
+ * Instances are not thread safe while the labels are added.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class LabelDictionary {
+    private final List<BaseType> labels = new ArrayList<>();
+    private final Map<BaseType, Integer> indices = new HashMap<>();
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    public LabelDictionary() {
+    }
+
+    /**
+     * @param labels Distinct labels in the order of their indices, repeated
+     *               labels are ignored.
+     */
+    public LabelDictionary(Collection<BaseType> labels) {
+        for (BaseType label : labels)
+            add(label);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Business logic
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Index of the label, the label is added if it is absent.
+     */
+    public int add(BaseType label) {
+        if (label == null)
+            throw new NullPointerException("Label should be initialized!");
+        Integer index = indices.get(label);
+        if (index == null) {
+            index = labels.size();
+            indices.put(label, index);
+            labels.add(label);
+        }
+        return index;
+    }
+
+    /**
+     * @return Index of the label, -1 if the label is {@code null} or absent.
+     */
+    public int indexOf(BaseType label) {
+        Integer index = label == null ? null : indices.get(label);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return Label with the given index.
+     */
+    public BaseType get(int index) {
+        return labels.get(index);
+    }
+
+    /**
+     * @param labels Labels aligned with the rows, {@code null} for the rows
+     *               without label.
+     * @return Indices of the labels aligned with the rows.
+     * @throws IllegalArgumentException if a label is absent.
+     */
+    public LabelVector encode(BaseType[] labels) {
+        LabelVector result = LabelVector.create(labels.length, size());
+        int index;
+        for (int row = 0; row < labels.length; ++row) {
+            if (labels[row] == null)
+                continue;
+            if ((index = indexOf(labels[row])) < 0)
+                throw new IllegalArgumentException("Unknown label '" + labels[row] + "'!");
+            result.set(row, index);
+        }
+        return result;
+    }
+
+    /**
+     * @return Labels aligned with the rows, {@code null} for the rows without
+     * label.
+     */
+    public BaseType[] decode(LabelVector labels) {
+        BaseType[] result = new BaseType[labels.size()];
+        int index;
+        for (int row = 0; row < result.length; ++row)
+            if ((index = labels.get(row)) >= 0)
+                result[row] = this.labels.get(index);
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Amount of the labels.
+     */
+    public int size() {
+        return labels.size();
+    }
+
+    /**
+     * @return Labels in the order of their indices.
+     */
+    public List<BaseType> getLabels() {
+        return Collections.unmodifiableList(labels);
+    }
+
+    /**
+     * @return Set of the labels which iterates in the order of their indices.
+     */
+    public Set<BaseType> toSet() {
+        return new LinkedHashSet<>(labels);
+    }
+}
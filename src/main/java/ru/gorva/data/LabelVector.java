@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+import java.util.Arrays;
+
+/**
+ * Label indices aligned with the rows of a data set, -1 for the rows without
+ * label. Indices are stored in the narrowest primitive array which fits the
+ * amount of the labels: {@code byte} for up to 127 labels, {@code short} for
+ * up to 32767 labels and {@code int} otherwise.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ * @see LabelDictionary
+ */
+public abstract class LabelVector {
+    public static final int NONE = -1;  // Index of the rows without label.
+
+    protected final int size;
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    protected LabelVector(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Size can't be negative!");
+        this.size = size;
+    }
+
+    /**
+     * Creates vector of the rows without label.
+     *
+     * @param size Amount of rows.
+     * @param k    Amount of labels.
+     */
+    public static LabelVector create(int size, int k) {
+        if (k <= Byte.MAX_VALUE)
+            return new ByteLabels(size);
+        if (k <= Short.MAX_VALUE)
+            return new ShortLabels(size);
+        return new IntLabels(size);
+    }
+
+    /**
+     * @param labels Label indices, negative for the rows without label.
+     * @param k      Amount of labels.
+     */
+    public static LabelVector of(int[] labels, int k) {
+        LabelVector result = create(labels.length, k);
+        for (int row = 0; row < labels.length; ++row)
+            if (labels[row] >= 0)
+                result.set(row, labels[row]);
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Element access
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Label index of the row, {@link #NONE} if the row has no label.
+     */
+    public abstract int get(int row);
+
+    /**
+     * @param label Label index of the row, {@link #NONE} if the row has no
+     *              label.
+     */
+    public abstract void set(int row, int label);
+
+    /**
+     * @return Label indices in a new array.
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        for (int row = 0; row < size; ++row)
+            result[row] = get(row);
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Size of a single index in bytes.
+     */
+    public abstract int getElementBytes();
+
+
+    // ------------------------------------------------------------------------
+    // Implementations
+    // ------------------------------------------------------------------------
+
+    private static class ByteLabels extends LabelVector {
+        private final byte[] labels;
+
+        ByteLabels(int size) {
+            super(size);
+            labels = new byte[size];
+            Arrays.fill(labels, (byte) NONE);
+        }
+
+        @Override
+        public int get(int row) {
+            return labels[row];
+        }
+
+        @Override
+        public void set(int row, int label) {
+            if (label > Byte.MAX_VALUE)
+                throw new IllegalArgumentException("Label index " + label + " does not fit the vector!");
+            labels[row] = (byte) label;
+        }
+
+        @Override
+        public int getElementBytes() {
+            return Byte.BYTES;
+        }
+    }
+
+    private static class ShortLabels extends LabelVector {
+        private final short[] labels;
+
+        ShortLabels(int size) {
+            super(size);
+            labels = new short[size];
+            Arrays.fill(labels, (short) NONE);
+        }
+
+        @Override
+        public int get(int row) {
+            return labels[row];
+        }
+
+        @Override
+        public void set(int row, int label) {
+            if (label > Short.MAX_VALUE)
+                throw new IllegalArgumentException("Label index " + label + " does not fit the vector!");
+            labels[row] = (short) label;
+        }
+
+        @Override
+        public int getElementBytes() {
+            return Short.BYTES;
+        }
+    }
+
+    private static class IntLabels extends LabelVector {
+        private final int[] labels;
+
+        IntLabels(int size) {
+            super(size);
+            labels = new int[size];
+            Arrays.fill(labels, NONE);
+        }
+
+        @Override
+        public int get(int row) {
+            return labels[row];
+        }
+
+        @Override
+        public void set(int row, int label) {
+            labels[row] = label;
+        }
+
+        @Override
+        public int getElementBytes() {
+            return Integer.BYTES;
+        }
+    }
+}
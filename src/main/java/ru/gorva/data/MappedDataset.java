@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code MappedDataset} class represents read only data set stored in the
+ * binary columnar file and opened via memory mapping. Values are not parsed
+ * nor copied onto the heap.
+ * <p>
+ * File format, all values are little-endian:
+ * <pre>
+ * offset  size  content
+ *      0     8  magic "CPLSIBIN"
+ *      8     4  version
+ *     12     4  dimension, i.e. amount of columns
+ *     16     8  size, i.e. amount of rows
+ *     24     4  amount of distinct labels
+ *     28     4  flags, 1 if there is a label column
+ *     32     8  offset of the label column
+ *     40     8  length of the file
+ *     48  40*d  column descriptors: int type (0 = float64), int reserved,
+ *               long offset, double min, double max, double mean
+ *      .     .  label dictionary: int length and UTF-8 text of each label
+ *      .     .  columns, each aligned to 64 bytes: 'size' float64 values
+ *      .     .  label column aligned to 64 bytes: 'size' int32 label indices,
+ *               -1 for the rows without label
+ * </pre>
+ * Each column is mapped separately, so the amount of rows is limited by
+ * {@link #MAX_SIZE}.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public class MappedDataset extends Dataset {
+    public static final int MAX_SIZE = Integer.MAX_VALUE / Double.BYTES;
+
+    static final byte[] MAGIC = "CPLSIBIN".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int TYPE_FLOAT64 = 0;
+    static final int FLAG_LABELS = 1;
+    static final int HEADER_SIZE = 48;
+    static final int DESCRIPTOR_SIZE = 40;
+    static final int ALIGNMENT = 64;
+
+    private final DoubleBuffer[] columns;
+    private final IntBuffer labels;         // Label index of each row, null if there is no label column.
+    private final BaseType[] dictionary;    // Label index -> label.
+    private final double[] min;
+    private final double[] max;
+    private final double[] mean;
+
+
+    // ------------------------------------------------------------------------
+    // Constructors and related initialization methods
+    // ------------------------------------------------------------------------
+
+    private MappedDataset(int size, int dimension, DoubleBuffer[] columns, IntBuffer labels,
+                          BaseType[] dictionary, double[] min, double[] max, double[] mean) {
+        super(size, dimension);
+        this.columns = columns;
+        this.labels = labels;
+        this.dictionary = dictionary;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+    }
+
+    /**
+     * Opens the binary data set file.
+     *
+     * @param file File written by the {@link Writer}.
+     * @return Data set backed by the mapped file.
+     * @throws IOException in case of reading errors or unsupported format.
+     */
+    public static MappedDataset open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("File '" + file + "' is not a CPLSI binary data set!");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("File '" + file + "' is not a CPLSI binary data set!");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported version " + version + " of the file '" + file + "'!");
+            int dimension = header.getInt();
+            long size = header.getLong();
+            int labelCount = header.getInt();
+            int flags = header.getInt();
+            long labelOffset = header.getLong();
+            long length = header.getLong();
+            if (size > MAX_SIZE || length > channel.size())
+                throw new IOException("File '" + file + "' is corrupted!");
+
+            // Read column descriptors and label dictionary.
+            ByteBuffer descriptors = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                    (long) DESCRIPTOR_SIZE * dimension).order(ByteOrder.LITTLE_ENDIAN);
+            DoubleBuffer[] columns = new DoubleBuffer[dimension];
+            double[] min = new double[dimension];
+            double[] max = new double[dimension];
+            double[] mean = new double[dimension];
+            long dictionaryOffset = HEADER_SIZE + (long) DESCRIPTOR_SIZE * dimension;
+            for (int i = 0; i < dimension; ++i) {
+                int type = descriptors.getInt();
+                descriptors.getInt();
+                long offset = descriptors.getLong();
+                min[i] = descriptors.getDouble();
+                max[i] = descriptors.getDouble();
+                mean[i] = descriptors.getDouble();
+                if (type != TYPE_FLOAT64)
+                    throw new IOException("Unsupported type " + type + " of the column " + i + "!");
+                columns[i] = map(channel, offset, size * Double.BYTES).asDoubleBuffer();
+            }
+            BaseType[] dictionary = new BaseType[labelCount];
+            IntBuffer labels = null;
+            if ((flags & FLAG_LABELS) != 0) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                        labelOffset - dictionaryOffset).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < labelCount; ++i) {
+                    byte[] text = new byte[buffer.getInt()];
+                    buffer.get(text);
+                    dictionary[i] = BaseType.createDataValue(new String(text, StandardCharsets.UTF_8));
+                }
+                labels = map(channel, labelOffset, size * Integer.BYTES).asIntBuffer();
+            }
+            return new MappedDataset((int) size, dimension, columns, labels, dictionary, min, max, mean);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Element access
+    // ------------------------------------------------------------------------
+
+    @Override
+    public double get(int row, int column) {
+        return columns[column].get(row);
+    }
+
+    @Override
+    public double squaredDistance(int row, double[] point) {
+        double result = 0, diff;
+        for (int i = 0; i < dimension; ++i) {
+            diff = columns[i].get(row) - point[i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    @Override
+    public void accumulate(int row, double[] sum, double factor) {
+        for (int i = 0; i < dimension; ++i)
+            sum[i] += factor * columns[i].get(row);
+    }
+
+    /**
+     * @return Index of the label of the row in the {@link #getLabelDictionary()},
+     * -1 if the row has no label.
+     */
+    public int getLabelIndex(int row) {
+        return labels == null ? -1 : labels.get(row);
+    }
+
+    /**
+     * @return Label indices of the rows copied onto the heap, indices refer
+     * to the {@link #getLabelDictionary()}.
+     */
+    public LabelVector getLabelVector() {
+        LabelVector result = LabelVector.create(size, dictionary.length);
+        if (labels != null)
+            for (int row = 0; row < size; ++row)
+                result.set(row, labels.get(row));
+        return result;
+    }
+
+    /**
+     * @return Labels aligned with the rows, {@code null} for the rows without
+     * label.
+     */
+    public BaseType[] getRowLabels() {
+        BaseType[] result = new BaseType[size];
+        if (labels != null)
+            for (int row = 0; row < size; ++row) {
+                int index = labels.get(row);
+                result[row] = index < 0 ? null : dictionary[index];
+            }
+        return result;
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Getters and Setters
+    // ------------------------------------------------------------------------
+
+    @Override
+    public int getLayout() {
+        return Layouts.COLUMN_MAJOR;
+    }
+
+    public boolean hasLabels() {
+        return labels != null;
+    }
+
+    /**
+     * @return Distinct labels with their indices.
+     */
+    public LabelDictionary getLabelDictionary() {
+        return new LabelDictionary(Arrays.asList(dictionary));
+    }
+
+    /**
+     * @return Distinct labels in the order of their indices.
+     */
+    public Set<BaseType> getDistinctLabels() {
+        return new LinkedHashSet<>(Arrays.asList(dictionary));
+    }
+
+    public double getMin(int column) {
+        return min[column];
+    }
+
+    public double getMax(int column) {
+        return max[column];
+    }
+
+    public double getMean(int column) {
+        return mean[column];
+    }
+
+
+    // ------------------------------------------------------------------------
+    // Writer
+    // ------------------------------------------------------------------------
+
+    /**
+     * Writes binary data set file of the known size. Rows could be written in
+     * any order, column statistics are calculated from the written rows.
+     */
+    public static class Writer implements Closeable {
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final List<MappedByteBuffer> mappings = new ArrayList<>();
+        private final int size;
+        private final int dimension;
+        private final DoubleBuffer[] columns;
+        private final IntBuffer labels;
+        private final ByteBuffer descriptors;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+
+        /**
+         * @param file       File to be written.
+         * @param size       Amount of rows.
+         * @param dimension  Amount of columns.
+         * @param dictionary Distinct labels, {@code null} if there is no label column.
+         * @throws IOException in case of writing errors.
+         */
+        public Writer(File file, int size, int dimension, BaseType[] dictionary) throws IOException {
+            if (size < 0 || size > MAX_SIZE)
+                throw new IllegalArgumentException("Size should be from 0 to " + MAX_SIZE + "!");
+            if (dimension < 0)
+                throw new IllegalArgumentException("Dimension can't be negative!");
+            this.size = size;
+            this.dimension = dimension;
+            this.min = new double[dimension];
+            this.max = new double[dimension];
+            this.sum = new double[dimension];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+            // Encode label dictionary to know the length of the header.
+            byte[][] texts = new byte[dictionary == null ? 0 : dictionary.length][];
+            long dictionaryLength = 0;
+            for (int i = 0; i < texts.length; ++i) {
+                texts[i] = dictionary[i].toString().getBytes(StandardCharsets.UTF_8);
+                dictionaryLength += Integer.BYTES + texts[i].length;
+            }
+            long offset = align(HEADER_SIZE + (long) DESCRIPTOR_SIZE * dimension + dictionaryLength);
+            long[] columnOffsets = new long[dimension];
+            for (int i = 0; i < dimension; ++i) {
+                columnOffsets[i] = offset;
+                offset = align(offset + (long) size * Double.BYTES);
+            }
+            long labelOffset = dictionary == null ? 0 : offset;
+            long length = dictionary == null ? offset : offset + (long) size * Integer.BYTES;
+
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            try {
+                raf.setLength(0);
+                raf.setLength(length);
+                ByteBuffer header = map(0, HEADER_SIZE);
+                header.put(MAGIC);
+                header.putInt(VERSION);
+                header.putInt(dimension);
+                header.putLong(size);
+                header.putInt(texts.length);
+                header.putInt(dictionary == null ? 0 : FLAG_LABELS);
+                header.putLong(labelOffset);
+                header.putLong(length);
+                ByteBuffer buffer = map(HEADER_SIZE + (long) DESCRIPTOR_SIZE * dimension, dictionaryLength);
+                for (byte[] text : texts) {
+                    buffer.putInt(text.length);
+                    buffer.put(text);
+                }
+                this.descriptors = map(HEADER_SIZE, (long) DESCRIPTOR_SIZE * dimension);
+                this.columns = new DoubleBuffer[dimension];
+                for (int i = 0; i < dimension; ++i)
+                    columns[i] = map(columnOffsets[i], (long) size * Double.BYTES).asDoubleBuffer();
+                this.labels = dictionary == null ? null
+                        : map(labelOffset, (long) size * Integer.BYTES).asIntBuffer();
+                for (int i = 0; i < dimension; ++i) {
+                    descriptors.putInt(i * DESCRIPTOR_SIZE, TYPE_FLOAT64);
+                    descriptors.putLong(i * DESCRIPTOR_SIZE + 8, columnOffsets[i]);
+                }
+            } catch (IOException | RuntimeException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        private static long align(long offset) {
+            return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        }
+
+        private ByteBuffer map(long offset, long length) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+            mappings.add(buffer);
+            return buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * @param row    Index of the row.
+         * @param values Values of the row.
+         * @param label  Index of the label in the dictionary, -1 if the row has
+         *               no label. Ignored if there is no label column.
+         */
+        public void setRow(int row, double[] values, int label) {
+            if (values.length != dimension)
+                throw new IllegalArgumentException("Row should have " + dimension + " values!");
+            for (int i = 0; i < dimension; ++i) {
+                double value = values[i];
+                columns[i].put(row, value);
+                if (value < min[i])
+                    min[i] = value;
+                if (value > max[i])
+                    max[i] = value;
+                sum[i] += value;
+            }
+            if (labels != null)
+                labels.put(row, label);
+        }
+
+        /**
+         * Writes column statistics and flushes the file. Rows which were not
+         * written are zero.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                for (int i = 0; i < dimension; ++i) {
+                    descriptors.putDouble(i * DESCRIPTOR_SIZE + 16, size == 0 ? 0 : min[i]);
+                    descriptors.putDouble(i * DESCRIPTOR_SIZE + 24, size == 0 ? 0 : max[i]);
+                    descriptors.putDouble(i * DESCRIPTOR_SIZE + 32, size == 0 ? 0 : sum[i] / size);
+                }
+                for (MappedByteBuffer buffer : mappings)
+                    buffer.force();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
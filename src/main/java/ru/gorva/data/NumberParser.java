@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+/**
+ * Parser of the decimal numbers which does not rely on exceptions for the
+ * malformed input. Accepts optional sign, digits with optional fraction part
+ * and optional exponent, as well as {@code NaN} and {@code Infinity}.
+ * Surrounding spaces are ignored.
+ * <p>
+ * Values with up to 15 significant digits and decimal exponent up to 22 are
+ * computed directly with a single correctly rounded operation, other values
+ * are delegated to {@link Double#parseDouble(String)} after validation.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+public final class NumberParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private NumberParser() {
+    }
+
+    /**
+     * @return Type of the trimmed value: {@code Types.INTEGER} if it is an
+     * integer which fits into {@code int}, {@code Types.REAL} if it is any
+     * other number and {@code Types.STRING} otherwise.
+     */
+    public static int classify(CharSequence value) {
+        return classify(value, 0, value.length());
+    }
+
+    /**
+     * @return Type of the trimmed value in the range {@code [from, to)}.
+     * @see #classify(CharSequence)
+     */
+    public static int classify(CharSequence value, int from, int to) {
+        while (from < to && value.charAt(from) == ' ')
+            ++from;
+        while (to > from && value.charAt(to - 1) == ' ')
+            --to;
+        if (from == to)
+            return BaseType.Types.STRING;
+        int i = from;
+        char c = value.charAt(i);
+        if (c == '-' || c == '+')
+            ++i;
+        if (i < to && i + 10 >= to) {
+            // Integer of up to 10 digits, verify it fits into int.
+            long result = 0;
+            int j = i;
+            while (j < to && (c = value.charAt(j)) >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+                ++j;
+            }
+            if (j == to) {
+                if (value.charAt(from) == '-')
+                    result = -result;
+                if (result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE)
+                    return BaseType.Types.INTEGER;
+                return BaseType.Types.REAL;
+            }
+        }
+        double result = parseDouble(value, from, to);
+        return !Double.isNaN(result) || isNaN(value, from, to) ? BaseType.Types.REAL : BaseType.Types.STRING;
+    }
+
+    /**
+     * Parses integer value. The value should be classified as
+     * {@code Types.INTEGER} by the {@link #classify(CharSequence, int, int)}.
+     */
+    public static int parseInt(CharSequence value, int from, int to) {
+        while (from < to && value.charAt(from) == ' ')
+            ++from;
+        boolean negative = value.charAt(from) == '-';
+        if (negative || value.charAt(from) == '+')
+            ++from;
+        long result = 0;
+        char c;
+        while (from < to && (c = value.charAt(from)) >= '0' && c <= '9') {
+            result = result * 10 + (c - '0');
+            ++from;
+        }
+        return (int) (negative ? -result : result);
+    }
+
+    /**
+     * Parses real value.
+     *
+     * @return Parsed value or {@code Double.NaN} if the value is malformed.
+     * Use {@link #isNaN(CharSequence, int, int)} to distinguish malformed
+     * value from the {@code NaN} literal.
+     */
+    public static double parseDouble(CharSequence value) {
+        return parseDouble(value, 0, value.length());
+    }
+
+    /**
+     * Parses real value in the range {@code [from, to)}.
+     *
+     * @see #parseDouble(CharSequence)
+     */
+    public static double parseDouble(CharSequence value, int from, int to) {
+        while (from < to && value.charAt(from) == ' ')
+            ++from;
+        while (to > from && value.charAt(to - 1) == ' ')
+            --to;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+            negative = value.charAt(i++) == '-';
+        if (i == to)
+            return Double.NaN;
+        char c = value.charAt(i);
+        if (c == 'I')
+            return matches(value, i, to, "Infinity")
+                    ? (negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY) : Double.NaN;
+
+        long mantissa = 0;
+        int significant = 0;        // Amount of significant digits in the mantissa.
+        int digits = 0;             // Amount of all the digits.
+        int exponent = 0;
+        // Integer part.
+        while (i < to && (c = value.charAt(i)) >= '0' && c <= '9') {
+            if (significant < 19) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0)
+                    ++significant;
+            } else
+                ++exponent;
+            ++digits;
+            ++i;
+        }
+        // Fraction part.
+        if (i < to && value.charAt(i) == '.') {
+            ++i;
+            while (i < to && (c = value.charAt(i)) >= '0' && c <= '9') {
+                if (significant < 19) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0)
+                        ++significant;
+                    --exponent;
+                }
+                ++digits;
+                ++i;
+            }
+        }
+        if (digits == 0)
+            return Double.NaN;
+        // Exponent part.
+        if (i < to && ((c = value.charAt(i)) == 'e' || c == 'E')) {
+            ++i;
+            boolean negativeExponent = false;
+            if (i < to && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+                negativeExponent = value.charAt(i++) == '-';
+            int start = i;
+            int explicit = 0;
+            while (i < to && (c = value.charAt(i)) >= '0' && c <= '9') {
+                if (explicit < 100_000)
+                    explicit = explicit * 10 + (c - '0');
+                ++i;
+            }
+            if (i == start)
+                return Double.NaN;
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (i != to)
+            return Double.NaN;
+
+        double result;
+        if (mantissa == 0)
+            result = 0;
+        else if (significant <= 15 && exponent >= -22 && exponent <= 22)
+            // Both operands are exact, so the single operation is correctly rounded.
+            result = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        else
+            return Double.parseDouble(value.subSequence(from, to).toString());
+        return negative ? -result : result;
+    }
+
+    /**
+     * @return Whether the trimmed value in the range {@code [from, to)} is
+     * the {@code NaN} literal.
+     */
+    public static boolean isNaN(CharSequence value, int from, int to) {
+        while (from < to && value.charAt(from) == ' ')
+            ++from;
+        while (to > from && value.charAt(to - 1) == ' ')
+            --to;
+        if (from < to && (value.charAt(from) == '-' || value.charAt(from) == '+'))
+            ++from;
+        return matches(value, from, to, "NaN");
+    }
+
+    private static boolean matches(CharSequence value, int from, int to, String literal) {
+        if (to - from != literal.length())
+            return false;
+        for (int i = 0; i < literal.length(); ++i)
+            if (value.charAt(from + i) != literal.charAt(i))
+                return false;
+        return true;
+    }
+}
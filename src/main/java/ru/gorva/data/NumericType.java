@@ -45,6 +45,27 @@ public abstract class NumericType extends BaseType {
      */
     public abstract NumericType div(NumericType value);
 
+    /**
+     * Addition of the primitive value, does not allocate.
+     *
+     * @param value Second operand of the operation.
+     * @return {@code this}.
+     */
+    public abstract NumericType add(double value);
+
+    /**
+     * Division by the primitive value, does not allocate.
+     *
+     * @param value Denominator of the operation.
+     * @return {@code this}.
+     */
+    public abstract NumericType div(double value);
+
+    /**
+     * @return Value of the object widened to {@code double} without boxing.
+     */
+    public abstract double doubleValue();
+
     // ------------------------------------------------------------------------
     // Static methods. Arithmetic operations for the numeric objects.
     // ------------------------------------------------------------------------
@@ -62,7 +83,7 @@ public abstract class NumericType extends BaseType {
         if (values1.length != values2.length)
             throw new IllegalArgumentException("Length of the operands should be the same!");
         for (int i = 0; i < values1.length; ++i)
-            values1[i].add((NumericType) values2[i]);
+            values1[i].add(((NumericType) values2[i]).doubleValue());
     }
 
     /**
@@ -83,7 +104,7 @@ public abstract class NumericType extends BaseType {
         if (n < 0)
             throw new IllegalArgumentException("'n' can't be negative!");
         for (int i = 0; i < n; ++i)
-            values1[i].add((NumericType) values2[i]);
+            values1[i].add(((NumericType) values2[i]).doubleValue());
     }
 
     /**
@@ -97,9 +118,8 @@ public abstract class NumericType extends BaseType {
     public static void div(NumericType[] values, double denominator) {
         if (values == null)
             throw new NullPointerException("Array should be initialized!");
-        RealType denom = new RealType(denominator);
         for (int i = 0; i < values.length; ++i)
-            values[i].div(denom);
+            values[i].div(denominator);
     }
 
     /**
@@ -116,9 +136,8 @@ public abstract class NumericType extends BaseType {
             throw new NullPointerException("Values should be initialized!");
         if (n >= values.length)
             throw new IllegalArgumentException("'n' can't exceed length of the array!");
-        RealType denom = new RealType(denominator);
         for (int i = 0; i < n; ++i)
-            values[i].div(denom);
+            values[i].div(denominator);
     }
 
     /**
@@ -139,9 +158,8 @@ public abstract class NumericType extends BaseType {
             throw new IllegalArgumentException("'n' can't exceed length of the array!");
         if (beginIndex + n > values.length)
             throw new IllegalArgumentException("'beginIndex + n' can't exceed length of the array!");
-        RealType denom = new RealType(denominator);
         for (int i = beginIndex; i < beginIndex + n; ++i)
-            values[i].div(denom);
+            values[i].div(denominator);
     }
 
 }
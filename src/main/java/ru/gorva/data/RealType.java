@@ -38,6 +38,11 @@ public class RealType extends NumericType {
         return value;
     }
 
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
     /**
      * Element-wise addition of the current values by values stored in
      * {@code value}.
@@ -47,10 +52,7 @@ public class RealType extends NumericType {
      */
     @Override
     public NumericType add(NumericType value) {
-        Object obj = value.getValue();
-        double val = (value.getType() == Types.REAL) ? (double) obj : (int) obj;
-        this.value += val;
-        return this;
+        return add(value.doubleValue());
     }
 
     /**
@@ -62,9 +64,18 @@ public class RealType extends NumericType {
      */
     @Override
     public NumericType div(NumericType value) {
-        Object obj = value.getValue();
-        double val = (value.getType() == Types.REAL) ? (double) obj : (int) obj;
-        this.value /= val;
+        return div(value.doubleValue());
+    }
+
+    @Override
+    public NumericType add(double value) {
+        this.value += value;
+        return this;
+    }
+
+    @Override
+    public NumericType div(double value) {
+        this.value /= value;
         return this;
     }
 
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 Vladyslav Vasyliev
+ *
+ * This file is part of cplsi project.
+ *
+ * cplsi is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * cplsi is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with cplsi.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+package ru.gorva.data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of the {@link DistanceKernel} over the preferred lanes of
+ * the {@code jdk.incubator.vector} module. Compiled by the {@code vector}
+ * profile only and loaded by the {@link DistanceKernels}.
+ *
+ * @author Vladyslav Vasyliev
+ *         Created on 18.10.26.
+ */
+final class VectorDistanceKernel implements DistanceKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    VectorDistanceKernel() {
+        // Fail on loading if the lanes are not supported.
+        if (SPECIES.length() < 2)
+            throw new UnsupportedOperationException("Vector lanes are not available!");
+    }
+
+    @Override
+    public double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        DoubleVector diff;
+        int i = 0, bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            diff = DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(DoubleVector.fromArray(SPECIES, b, bOffset + i));
+            sum = diff.fma(diff, sum);
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD), tail;
+        for (; i < length; ++i) {
+            tail = a[aOffset + i] - b[bOffset + i];
+            result += tail * tail;
+        }
+        return result;
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0, bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length())
+            sum = DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(DoubleVector.fromArray(SPECIES, b, bOffset + i), sum);
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; ++i)
+            result += a[aOffset + i] * b[bOffset + i];
+        return result;
+    }
+
+    @Override
+    public void dots(double[] a, int aOffset, double[][] b, int from, int to, int length,
+                     double[] result, int resultOffset) {
+        int j = from, bound = SPECIES.loopBound(length), i;
+        DoubleVector value, s0, s1, s2, s3;
+        double[] b0, b1, b2, b3;
+        double t0, t1, t2, t3, tail;
+        // Four products at once, each lane of 'a' is loaded once.
+        for (; j + 4 <= to; j += 4) {
+            b0 = b[j];
+            b1 = b[j + 1];
+            b2 = b[j + 2];
+            b3 = b[j + 3];
+            s0 = s1 = s2 = s3 = DoubleVector.zero(SPECIES);
+            for (i = 0; i < bound; i += SPECIES.length()) {
+                value = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+                s0 = value.fma(DoubleVector.fromArray(SPECIES, b0, i), s0);
+                s1 = value.fma(DoubleVector.fromArray(SPECIES, b1, i), s1);
+                s2 = value.fma(DoubleVector.fromArray(SPECIES, b2, i), s2);
+                s3 = value.fma(DoubleVector.fromArray(SPECIES, b3, i), s3);
+            }
+            t0 = s0.reduceLanes(VectorOperators.ADD);
+            t1 = s1.reduceLanes(VectorOperators.ADD);
+            t2 = s2.reduceLanes(VectorOperators.ADD);
+            t3 = s3.reduceLanes(VectorOperators.ADD);
+            for (; i < length; ++i) {
+                tail = a[aOffset + i];
+                t0 += tail * b0[i];
+                t1 += tail * b1[i];
+                t2 += tail * b2[i];
+                t3 += tail * b3[i];
+            }
+            result[resultOffset + j - from] = t0;
+            result[resultOffset + j - from + 1] = t1;
+            result[resultOffset + j - from + 2] = t2;
+            result[resultOffset + j - from + 3] = t3;
+        }
+        for (; j < to; ++j)
+            result[resultOffset + j - from] = dot(a, aOffset, b[j], 0, length);
+    }
+
+    @Override
+    public double squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector diff;
+        int i = 0, bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_SPECIES.length()) {
+            diff = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i));
+            sum = diff.fma(diff, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD), tail;
+        for (; i < length; ++i) {
+            tail = a[aOffset + i] - b[bOffset + i];
+            result += tail * tail;
+        }
+        return result;
+    }
+
+    @Override
+    public void dots(float[] a, int aOffset, float[][] b, int from, int to, int length,
+                     double[] result, int resultOffset) {
+        int j = from, bound = FLOAT_SPECIES.loopBound(length), i;
+        FloatVector value, s0, s1, s2, s3;
+        float[] b0, b1, b2, b3;
+        float t0, t1, t2, t3, tail;
+        // Four products at once, each lane of 'a' is loaded once.
+        for (; j + 4 <= to; j += 4) {
+            b0 = b[j];
+            b1 = b[j + 1];
+            b2 = b[j + 2];
+            b3 = b[j + 3];
+            s0 = s1 = s2 = s3 = FloatVector.zero(FLOAT_SPECIES);
+            for (i = 0; i < bound; i += FLOAT_SPECIES.length()) {
+                value = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+                s0 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b0, i), s0);
+                s1 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b1, i), s1);
+                s2 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b2, i), s2);
+                s3 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b3, i), s3);
+            }
+            t0 = s0.reduceLanes(VectorOperators.ADD);
+            t1 = s1.reduceLanes(VectorOperators.ADD);
+            t2 = s2.reduceLanes(VectorOperators.ADD);
+            t3 = s3.reduceLanes(VectorOperators.ADD);
+            for (; i < length; ++i) {
+                tail = a[aOffset + i];
+                t0 += tail * b0[i];
+                t1 += tail * b1[i];
+                t2 += tail * b2[i];
+                t3 += tail * b3[i];
+            }
+            result[resultOffset + j - from] = t0;
+            result[resultOffset + j - from + 1] = t1;
+            result[resultOffset + j - from + 2] = t2;
+            result[resultOffset + j - from + 3] = t3;
+        }
+        for (; j < to; ++j) {
+            s0 = FloatVector.zero(FLOAT_SPECIES);
+            b0 = b[j];
+            for (i = 0; i < bound; i += FLOAT_SPECIES.length())
+                s0 = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i)
+                        .fma(FloatVector.fromArray(FLOAT_SPECIES, b0, i), s0);
+            t0 = s0.reduceLanes(VectorOperators.ADD);
+            for (; i < length; ++i)
+                t0 += a[aOffset + i] * b0[i];
+            result[resultOffset + j - from] = t0;
+        }
+    }
+}
\ No newline at end of file